@@ -0,0 +1,196 @@
+package com.h2t.study.benchmark;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试用的合成文件集
+ * 以固定种子生成，同样的形态与内容每次生成的文件逐字节一致；生成后缓存在bench.dir（默认target/jmh-corpus）下复用。
+ * 文件大小按bench.scale（默认1）缩放
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/06 10:00
+ */
+public class BenchmarkCorpus {
+    /**
+     * 文件集根目录名称，压缩出的文件名为corpus.zip、corpus.tar.gz等
+     */
+    public static final String NAME = "corpus";
+    private static final String COMPLETE_MARKER = ".complete";
+    private static final long SEED = 20200106L;
+    /**
+     * 生成文本内容的词表
+     */
+    private static final byte[][] WORDS = words();
+
+    /**
+     * 文件集形态
+     */
+    public enum Shape {
+        /**
+         * 大量小文件：2000个4KB文件，分布在20个目录中
+         */
+        SMALL_FILES,
+        /**
+         * 少量大文件：2个32MB文件
+         */
+        HUGE_FILES,
+        /**
+         * 深层目录：64层目录，每层4个16KB文件
+         */
+        DEEP_TREE
+    }
+
+    /**
+     * 文件内容
+     */
+    public enum Content {
+        /**
+         * 随机单词组成的文本，可压缩
+         */
+        TEXT,
+        /**
+         * 随机字节，不可压缩
+         */
+        RANDOM
+    }
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * 基准测试工作目录
+     */
+    public static File baseDir() {
+        return new File(System.getProperty("bench.dir", "target/jmh-corpus"));
+    }
+
+    /**
+     * 获取（必要时生成）文件集
+     *
+     * @param shape   形态
+     * @param content 内容
+     * @return 文件集根目录
+     */
+    public static File prepare(Shape shape, Content content) throws IOException {
+        File home = new File(baseDir(), String.format("%s-%s-x%d", shape, content, scale()).toLowerCase());
+        File root = new File(home, NAME);
+        File marker = new File(home, COMPLETE_MARKER);
+        if (marker.exists()) {
+            return root;
+        }
+        delete(home);
+        if (!root.mkdirs()) {
+            throw new IOException("create corpus directory failed: " + root);
+        }
+        Random random = new Random(SEED + shape.ordinal() * 31 + content.ordinal());
+        int scale = scale();
+        switch (shape) {
+            case SMALL_FILES:
+                for (int i = 0; i < 2000 * scale; i++) {
+                    writeFile(new File(root, String.format("dir%02d/file%05d.dat", i % 20, i)), 4 * 1024, content, random);
+                }
+                break;
+            case HUGE_FILES:
+                for (int i = 0; i < 2; i++) {
+                    writeFile(new File(root, String.format("huge%d.dat", i)), 32L * 1024 * 1024 * scale, content, random);
+                }
+                break;
+            case DEEP_TREE:
+                StringBuilder path = new StringBuilder();
+                for (int depth = 0; depth < 64; depth++) {
+                    path.append(String.format("level%02d/", depth));
+                    for (int i = 0; i < 4 * scale; i++) {
+                        writeFile(new File(root, path + String.format("file%02d.dat", i)), 16 * 1024, content, random);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown shape: " + shape);
+        }
+        if (!marker.createNewFile()) {
+            throw new IOException("create corpus marker failed: " + marker);
+        }
+        return root;
+    }
+
+    /**
+     * 文件集中全部文件的总大小
+     */
+    public static long size(File root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root.toPath())) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    /**
+     * 递归删除文件或目录
+     */
+    public static void delete(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(file.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static int scale() {
+        return Integer.getInteger("bench.scale", 1);
+    }
+
+    private static void writeFile(File file, long size, Content content, Random random) throws IOException {
+        if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            throw new IOException("create directory failed: " + file.getParentFile());
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            long remaining = size;
+            while (remaining > 0) {
+                int length = (int) Math.min(buffer.length, remaining);
+                if (content == Content.TEXT) {
+                    fillText(buffer, length, random);
+                } else {
+                    random.nextBytes(buffer);
+                }
+                out.write(buffer, 0, length);
+                remaining -= length;
+            }
+        }
+    }
+
+    /**
+     * 从固定词表中随机取词组成文本行
+     */
+    private static void fillText(byte[] buffer, int length, Random random) {
+        int position = 0;
+        while (position < length) {
+            byte[] word = WORDS[random.nextInt(WORDS.length)];
+            for (int i = 0; i < word.length && position < length; i++) {
+                buffer[position++] = word[i];
+            }
+            if (position < length) {
+                buffer[position++] = (byte) (random.nextInt(12) == 0 ? '\n' : ' ');
+            }
+        }
+    }
+
+    private static byte[][] words() {
+        Random random = new Random(SEED);
+        byte[][] words = new byte[512][];
+        for (int i = 0; i < words.length; i++) {
+            char[] word = new char[2 + random.nextInt(9)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(26));
+            }
+            words[i] = new String(word).getBytes(StandardCharsets.US_ASCII);
+        }
+        return words;
+    }
+}
@@ -0,0 +1,54 @@
+package com.h2t.study.benchmark;
+
+import com.h2t.study.enums.FileTypeEnum;
+import com.h2t.study.util.ArchiveOptions;
+
+/**
+ * 基准测试的参数组合，通过-p mode=...选择
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/06 10:30
+ */
+public class BenchmarkOptions {
+    private BenchmarkOptions() {
+    }
+
+    /**
+     * @param mode default：默认参数（tar条目零拷贝写入）；copy：关闭零拷贝，tar条目经缓冲区复制，与default对比零拷贝的收益；
+     *             mapped：内存映射读取zip、tar；async：异步写出；
+     *             pipelined：读取、编解码、写出三级流水线；single：压缩器单线程
+     * @return 参数
+     */
+    public static ArchiveOptions of(String mode) {
+        switch (mode) {
+            case "default":
+                return ArchiveOptions.DEFAULT;
+            case "copy":
+                return ArchiveOptions.builder().zeroCopy(false).build();
+            case "mapped":
+                return ArchiveOptions.builder().memoryMapped(true).build();
+            case "async":
+                return ArchiveOptions.builder().asyncWrite(true).build();
+            case "pipelined":
+                return ArchiveOptions.builder().pipelined(true).build();
+            case "single":
+                return ArchiveOptions.builder().gzipWorkers(1).zstdWorkers(1).xzWorkers(1).bzip2Workers(1).build();
+            default:
+                throw new IllegalArgumentException("unknown mode: " + mode);
+        }
+    }
+
+    /**
+     * @param format 基准测试的format参数，即压缩格式的后缀
+     * @return 压缩格式
+     */
+    public static FileTypeEnum fileType(String format) {
+        for (FileTypeEnum type : FileTypeEnum.values()) {
+            if (type.getTypeName().equals(format)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("unknown format: " + format);
+    }
+}
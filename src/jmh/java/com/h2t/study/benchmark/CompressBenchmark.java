@@ -0,0 +1,90 @@
+package com.h2t.study.benchmark;
+
+import com.h2t.study.enums.FileTypeEnum;
+import com.h2t.study.util.ArchiveOptions;
+import com.h2t.study.util.CompressUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CompressUtil各压缩格式的吞吐量基准
+ * ops/s为每秒压缩的文件集个数，bytes为每秒压缩的原始字节数，配合-prof gc得到分配速率
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/06 11:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class CompressBenchmark {
+    @Param({"SMALL_FILES", "HUGE_FILES", "DEEP_TREE"})
+    private BenchmarkCorpus.Shape shape;
+
+    @Param({"TEXT", "RANDOM"})
+    private BenchmarkCorpus.Content content;
+
+    /**
+     * gz为单个tar文件的压缩，其余为文件集的打包压缩
+     */
+    @Param({"zip", "tar", "gz", "tar.gz", "tar.zst", "tar.lz4", "tar.xz", "tar.bz2"})
+    private String format;
+
+    /**
+     * 见BenchmarkOptions
+     */
+    @Param({"default"})
+    private String mode;
+
+    private FileTypeEnum type;
+    private File corpus;
+    private File tarFile;
+    private long corpusSize;
+    private String targetPath;
+    private ArchiveOptions options;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpus = BenchmarkCorpus.prepare(shape, content);
+        corpusSize = BenchmarkCorpus.size(corpus);
+        options = BenchmarkOptions.of(mode);
+        type = BenchmarkOptions.fileType(format);
+        File output = new File(BenchmarkCorpus.baseDir(), "compress-output");
+        BenchmarkCorpus.delete(output);
+        if (!output.mkdirs()) {
+            throw new IOException("create output directory failed: " + output);
+        }
+        targetPath = output.getPath();
+        if ("gz".equals(format)) {
+            //gz只能压缩单个文件，先把文件集打成tar，与tar.gz的输出分开存放
+            File tarDir = new File(output, "tar");
+            if (!tarDir.mkdirs()) {
+                throw new IOException("create output directory failed: " + tarDir);
+            }
+            tarFile = new File(CompressUtil.compressToTar(corpus.getPath(), tarDir.getPath()));
+            corpusSize = tarFile.length();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkCorpus.delete(new File(targetPath));
+    }
+
+    /**
+     * 调用抛出异常的CompressUtil.compress，压缩失败时基准直接报错，不会把只记录了日志的失败计入吞吐量
+     */
+    @Benchmark
+    public void compress(ProcessedBytes processed) throws IOException {
+        //gz压缩setUp中生成的tar文件
+        File source = type == FileTypeEnum.GZ ? tarFile : corpus;
+        CompressUtil.compress(type, source.getPath(), targetPath, options);
+        processed.bytes += corpusSize;
+    }
+}
@@ -0,0 +1,25 @@
+package com.h2t.study.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 处理的原始数据字节数，JMH按吞吐量模式换算为每秒字节数，与ops/s一同输出
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/06 10:40
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ProcessedBytes {
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+    }
+}
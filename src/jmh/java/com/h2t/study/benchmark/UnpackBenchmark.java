@@ -0,0 +1,135 @@
+package com.h2t.study.benchmark;
+
+import com.h2t.study.enums.FileTypeEnum;
+import com.h2t.study.util.ArchiveLister;
+import com.h2t.study.util.ArchiveOptions;
+import com.h2t.study.util.CompressUtil;
+import com.h2t.study.util.UnpackUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * UnpackUtil各压缩格式的吞吐量基准
+ * 压缩包在每轮开始前由CompressUtil从合成文件集生成。没有可用的rar压缩工具，rar需要通过-p format=rar
+ * 与-jvmArgsAppend -Dbench.rar=xxx.rar指定已有的压缩包，此时shape与content不起作用
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/06 14:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class UnpackBenchmark {
+    @Param({"SMALL_FILES", "HUGE_FILES", "DEEP_TREE"})
+    private BenchmarkCorpus.Shape shape;
+
+    @Param({"TEXT", "RANDOM"})
+    private BenchmarkCorpus.Content content;
+
+    /**
+     * gz为解压出单个tar文件，其余为解压出文件集
+     */
+    @Param({"zip", "tar", "gz", "tar.gz", "tar.zst", "tar.lz4", "tar.xz", "tar.bz2"})
+    private String format;
+
+    /**
+     * 见BenchmarkOptions
+     */
+    @Param({"default"})
+    private String mode;
+
+    private FileTypeEnum type;
+    private File archive;
+    private long unpackedSize;
+    private File output;
+    private ArchiveOptions options;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        options = BenchmarkOptions.of(mode);
+        type = BenchmarkOptions.fileType(format);
+        File work = new File(BenchmarkCorpus.baseDir(), "unpack-work");
+        BenchmarkCorpus.delete(work);
+        File archiveDir = new File(work, "archive");
+        output = new File(work, "output");
+        if (!archiveDir.mkdirs() || !output.mkdirs()) {
+            throw new IOException("create work directory failed: " + work);
+        }
+        if ("rar".equals(format)) {
+            prepareRar();
+            return;
+        }
+        File corpus = BenchmarkCorpus.prepare(shape, content);
+        unpackedSize = BenchmarkCorpus.size(corpus);
+        String archivePath = archiveDir.getPath();
+        switch (format) {
+            case "zip":
+                CompressUtil.compressToZip(corpus, archivePath);
+                break;
+            case "tar":
+                CompressUtil.compressToTar(corpus.getPath(), archivePath);
+                break;
+            case "gz":
+                File tarFile = new File(CompressUtil.compressToTar(corpus.getPath(), work.getPath()));
+                CompressUtil.compressTarToGz(tarFile, archivePath);
+                unpackedSize = tarFile.length();
+                break;
+            case "tar.gz":
+                CompressUtil.compressToTarGz(corpus, archivePath);
+                break;
+            case "tar.zst":
+                CompressUtil.compressToTarZst(corpus, archivePath, ArchiveOptions.DEFAULT);
+                break;
+            case "tar.lz4":
+                CompressUtil.compressToTarLz4(corpus, archivePath, ArchiveOptions.DEFAULT);
+                break;
+            case "tar.xz":
+                CompressUtil.compressToTarXz(corpus, archivePath, ArchiveOptions.DEFAULT);
+                break;
+            case "tar.bz2":
+                CompressUtil.compressToTarBz2(corpus, archivePath, ArchiveOptions.DEFAULT);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown format: " + format);
+        }
+        //gz为corpus.tar再压缩的corpus.tar.gz
+        String suffix = "gz".equals(format) ? "tar.gz" : format;
+        archive = new File(archiveDir, String.format("%s.%s", corpus.getName(), suffix));
+        if (!archive.isFile()) {
+            throw new IOException("create archive failed: " + archive);
+        }
+    }
+
+    private void prepareRar() throws IOException {
+        String rar = System.getProperty("bench.rar");
+        if (rar == null) {
+            throw new IllegalStateException("rar benchmark needs an existing archive: -jvmArgsAppend -Dbench.rar=xxx.rar");
+        }
+        archive = new File(rar);
+        try (Stream<ArchiveLister.Entry> entries = ArchiveLister.listRar(archive)) {
+            unpackedSize = entries.filter(entry -> !entry.isDirectory()).mapToLong(ArchiveLister.Entry::getSize).sum();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkCorpus.delete(output.getParentFile());
+    }
+
+    /**
+     * 调用抛出异常的UnpackUtil.unpack，解压失败时基准直接报错，不会把只记录了日志的失败计入吞吐量
+     */
+    @Benchmark
+    public void unpack(ProcessedBytes processed) throws IOException {
+        UnpackUtil.unpack(type, archive.getPath(), output.getPath(), options);
+        processed.bytes += unpackedSize;
+    }
+}
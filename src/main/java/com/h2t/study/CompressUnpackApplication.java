@@ -1,7 +1,10 @@
 package com.h2t.study;
 
+import com.h2t.study.util.ArchiveMetrics;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 public class CompressUnpackApplication {
@@ -10,4 +13,12 @@ public class CompressUnpackApplication {
         SpringApplication.run(CompressUnpackApplication.class, args);
     }
 
+    /**
+     * 压缩、解压指标记录到应用的MeterRegistry
+     */
+    @Bean
+    public MeterBinder archiveMetrics() {
+        return ArchiveMetrics::bindTo;
+    }
+
 }
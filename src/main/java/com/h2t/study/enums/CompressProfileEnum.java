@@ -0,0 +1,49 @@
+package com.h2t.study.enums;
+
+import java.util.zip.Deflater;
+
+/**
+ * 压缩预设：deflate压缩级别与策略的组合，zip、gz、tar.gz通用
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/20 10:15
+ */
+public enum CompressProfileEnum {
+    /**
+     * 最快速度
+     */
+    FAST(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY),
+    /**
+     * 速度与压缩率平衡，即deflate默认级别
+     */
+    BALANCED(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY),
+    /**
+     * 最大压缩率
+     */
+    MAX(Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY),
+    /**
+     * 适合数值分布较随机的小数据，如日志中的数字、时间戳
+     */
+    FILTERED(Deflater.DEFAULT_COMPRESSION, Deflater.FILTERED),
+    /**
+     * 只做哈夫曼编码，不做字符串匹配，CPU开销最低
+     */
+    HUFFMAN_ONLY(Deflater.DEFAULT_COMPRESSION, Deflater.HUFFMAN_ONLY);
+
+    private int level;
+    private int strategy;
+
+    CompressProfileEnum(int level, int strategy) {
+        this.level = level;
+        this.strategy = strategy;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getStrategy() {
+        return strategy;
+    }
+}
@@ -8,7 +8,8 @@ package com.h2t.study.enums;
  * @Date 2019/12/12 15:37
  */
 public enum FileTypeEnum {
-    TARGZ("tar.gz"), ZIP("zip"), RAR("rar"), GZ("gz"), TAR("tar");
+    TARGZ("tar.gz"), ZIP("zip"), RAR("rar"), GZ("gz"), TAR("tar"),
+    TARZST("tar.zst"), ZST("zst"), TARLZ4("tar.lz4"), LZ4("lz4"), TARXZ("tar.xz"), TARBZ2("tar.bz2");
     private String typeName;
 
     FileTypeEnum(String typeName) {
@@ -0,0 +1,19 @@
+package com.h2t.study.enums;
+
+/**
+ * 任务主要消耗的资源，调度时按资源分别限制同时执行的任务数
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/09 10:05
+ */
+public enum JobResourceEnum {
+    /**
+     * 计算密集：gzip、zstd、xz、bzip2压缩以及xz、bzip2解压，耗时主要在编解码
+     */
+    CPU,
+    /**
+     * 读写密集：tar打包解包、lz4以及gzip、zstd解压，耗时主要在磁盘读写
+     */
+    IO
+}
@@ -0,0 +1,35 @@
+package com.h2t.study.enums;
+
+/**
+ * 压缩、解压任务状态
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/09 10:00
+ */
+public enum JobStateEnum {
+    /**
+     * 排队中
+     */
+    QUEUED,
+    /**
+     * 执行中
+     */
+    RUNNING,
+    /**
+     * 执行完成
+     */
+    SUCCEEDED,
+    /**
+     * 执行时抛出异常
+     */
+    FAILED,
+    /**
+     * 排队或执行时被取消
+     */
+    CANCELLED;
+
+    public boolean isDone() {
+        return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+    }
+}
@@ -0,0 +1,17 @@
+package com.h2t.study.exception;
+
+import java.io.InterruptedIOException;
+
+/**
+ * 压缩、解压被CancellationToken取消
+ * 继承InterruptedIOException，在各拷贝循环中与读写异常一样向外抛出
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/08 10:00
+ */
+public class ArchiveCancelledException extends InterruptedIOException {
+    public ArchiveCancelledException(String msg) {
+        super(msg);
+    }
+}
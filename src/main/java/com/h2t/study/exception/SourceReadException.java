@@ -0,0 +1,21 @@
+package com.h2t.study.exception;
+
+import java.io.IOException;
+
+/**
+ * 待压缩的源文件无法读取（打不开、压缩过程中被截断等）
+ * 已写出的压缩包仍然完整，遍历文件夹压缩时只跳过该文件；写出压缩包失败时抛出的是普通IOException，中止整个压缩
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/13 10:00
+ */
+public class SourceReadException extends IOException {
+    public SourceReadException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+
+    public SourceReadException(String msg) {
+        super(msg);
+    }
+}
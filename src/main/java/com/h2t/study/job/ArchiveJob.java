@@ -0,0 +1,136 @@
+package com.h2t.study.job;
+
+import com.h2t.study.enums.JobStateEnum;
+import com.h2t.study.util.ArchiveOptions;
+import com.h2t.study.util.CancellationToken;
+import com.h2t.study.util.Progress;
+import com.h2t.study.util.ProgressListener;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 已提交的任务，可查询状态、进度，等待完成或取消
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/09 10:30
+ */
+public class ArchiveJob {
+    private final long id;
+    private final ArchiveJobRequest request;
+    private final ArchiveJobService service;
+    private final CancellationToken token = new CancellationToken();
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private volatile JobStateEnum state = JobStateEnum.QUEUED;
+    private volatile Progress progress;
+
+    ArchiveJob(long id, ArchiveJobRequest request, ArchiveJobService service) {
+        this.id = id;
+        this.request = request;
+        this.service = service;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public ArchiveJobRequest getRequest() {
+        return request;
+    }
+
+    public JobStateEnum getState() {
+        return state;
+    }
+
+    /**
+     * 最近一次回调的进度，尚未开始时为null
+     */
+    public Progress getProgress() {
+        return progress;
+    }
+
+    /**
+     * 任务结束时完成，失败时以任务抛出的异常完成，取消时被取消
+     */
+    public CompletableFuture<Void> getFuture() {
+        return future;
+    }
+
+    /**
+     * 取消任务：排队中的任务直接移出队列，执行中的任务在下一个条目或缓冲区处停止并删除未写完的文件
+     */
+    public void cancel() {
+        if (!service.dequeue(this)) {
+            token.cancel();
+        }
+    }
+
+    boolean isCancelled() {
+        return token.isCancelled();
+    }
+
+    void setState(JobStateEnum state) {
+        this.state = state;
+    }
+
+    /**
+     * 执行时的参数：请求参数加上本任务的取消标记，以及记录进度后转发给原监听器的监听器。
+     * 每个任务只占用一个cpu槽位，请求未指定共享线程池时zip及各编解码器改为单线程，
+     * 避免并发的任务各自按核数创建线程池。
+     * 运行在虚拟线程上时始终单线程编解码，且不复用线程内的缓冲区：虚拟线程每个任务新建一个，用完即弃，
+     * ThreadLocal缓存的缓冲区不会被复用，只会在任务期间多占一份内存；
+     * 解压tar、zip改用内存映射读取器，java.util.zip.ZipFile读取条目时持有监视器锁，在JDK 21~23上会把虚拟线程固定在载体线程上
+     */
+    ArchiveOptions options() {
+        ArchiveOptions options = request.getOptions();
+        ProgressListener listener = options.getProgressListener();
+        ArchiveOptions.Builder builder = options.toBuilder();
+        if (options.getExecutor() == null || service.isVirtualThreads()) {
+            builder.parallelism(1)
+                    .gzipWorkers(1)
+                    .zstdWorkers(1)
+                    .xzWorkers(1)
+                    .bzip2Workers(1);
+        }
+        if (service.isVirtualThreads()) {
+            builder.bufferPooled(false)
+                    .memoryMapped(true);
+        }
+        return builder
+                .cancellationToken(token)
+                .progressListener(new ProgressListener() {
+                    @Override
+                    public void entryStarted(String name, long size) {
+                        if (listener != null) {
+                            listener.entryStarted(name, size);
+                        }
+                    }
+
+                    @Override
+                    public void entryFinished(String name, long size) {
+                        if (listener != null) {
+                            listener.entryFinished(name, size);
+                        }
+                    }
+
+                    @Override
+                    public void progress(Progress current) {
+                        progress = current;
+                        if (listener != null) {
+                            listener.progress(current);
+                        }
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return "ArchiveJob{" +
+                "id=" + id +
+                ", name='" + request.getName() + '\'' +
+                ", tenant='" + request.getTenant() + '\'' +
+                ", state=" + state +
+                '}';
+    }
+}
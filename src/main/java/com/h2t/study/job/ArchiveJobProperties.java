@@ -0,0 +1,115 @@
+package com.h2t.study.job;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 任务调度配置，前缀archive.job
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/09 10:15
+ */
+@Component
+@ConfigurationProperties(prefix = "archive.job")
+public class ArchiveJobProperties {
+    /**
+     * 执行任务的线程数，即同时执行的任务数上限，默认为cpuSlots与ioSlots的默认值之和
+     */
+    private int workers = Runtime.getRuntime().availableProcessors() + 2;
+    /**
+     * 排队任务数上限，超出时拒绝提交
+     */
+    private int queueCapacity = 1000;
+    /**
+     * 每个租户同时执行的任务数上限，虚拟线程模式下同样生效
+     */
+    private int tenantConcurrency = 2;
+    /**
+     * 按租户单独设置的同时执行任务数上限，覆盖tenantConcurrency
+     */
+    private Map<String, Integer> tenantLimits = new HashMap<>();
+    /**
+     * 同时执行的计算密集任务数上限
+     */
+    private int cpuSlots = Runtime.getRuntime().availableProcessors();
+    /**
+     * 同时执行的读写密集任务数上限，同一磁盘上的并发读写过多时反而变慢；虚拟线程模式下同样生效，
+     * 默认值2会把解压、tar等读写密集任务限制为同时执行2个，需与workers一起调大
+     */
+    private int ioSlots = 2;
+    /**
+     * 每个任务在一个虚拟线程上执行（JDK 21+），大量阻塞在文件读写上的小任务不再受平台线程数量与内存的限制；
+     * 此时workers只限制同时执行的任务数，可调大到数千，但任务仍受ioSlots、cpuSlots、tenantConcurrency限制，
+     * 读写密集的任务要同时执行数千个需同时调大ioSlots与tenantConcurrency（或tenantLimits）。
+     * 任务内的压缩、解压固定单线程且不复用线程内的缓冲区。
+     * JDK不支持时退回平台线程池
+     */
+    private boolean virtualThreads;
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getTenantConcurrency() {
+        return tenantConcurrency;
+    }
+
+    public void setTenantConcurrency(int tenantConcurrency) {
+        this.tenantConcurrency = tenantConcurrency;
+    }
+
+    public Map<String, Integer> getTenantLimits() {
+        return tenantLimits;
+    }
+
+    public void setTenantLimits(Map<String, Integer> tenantLimits) {
+        this.tenantLimits = tenantLimits;
+    }
+
+    public int getCpuSlots() {
+        return cpuSlots;
+    }
+
+    public void setCpuSlots(int cpuSlots) {
+        this.cpuSlots = cpuSlots;
+    }
+
+    public int getIoSlots() {
+        return ioSlots;
+    }
+
+    public void setIoSlots(int ioSlots) {
+        this.ioSlots = ioSlots;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * 租户同时执行的任务数上限
+     */
+    public int tenantLimit(String tenant) {
+        return tenantLimits.getOrDefault(tenant, tenantConcurrency);
+    }
+}
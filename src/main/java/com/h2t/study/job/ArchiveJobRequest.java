@@ -0,0 +1,164 @@
+package com.h2t.study.job;
+
+import com.h2t.study.enums.FileTypeEnum;
+import com.h2t.study.enums.JobResourceEnum;
+import com.h2t.study.exception.CustomException;
+import com.h2t.study.util.ArchiveOptions;
+import com.h2t.study.util.CompressUtil;
+import com.h2t.study.util.UnpackUtil;
+
+/**
+ * 提交给ArchiveJobService的任务请求
+ * 通过Builder构建，compress、unpack按压缩格式生成执行逻辑并判断主要消耗的资源，
+ * 执行逻辑调用CompressUtil.compress、UnpackUtil.unpack，失败时抛出异常，任务状态为FAILED
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/09 10:20
+ */
+public class ArchiveJobRequest {
+    public static final String DEFAULT_TENANT = "default";
+
+    private final String name;
+    private final String tenant;
+    private final int priority;
+    private final JobResourceEnum resource;
+    private final ArchiveOptions options;
+    private final ArchiveTask task;
+
+    private ArchiveJobRequest(Builder builder) {
+        this.name = builder.name;
+        this.tenant = builder.tenant;
+        this.priority = builder.priority;
+        this.resource = builder.resource;
+        this.options = builder.options;
+        this.task = builder.task;
+    }
+
+    /**
+     * 自定义执行逻辑的任务
+     *
+     * @param name 任务名称，用于日志
+     * @param task 执行逻辑
+     */
+    public static Builder builder(String name, ArchiveTask task) {
+        return new Builder(name, task);
+    }
+
+    /**
+     * 压缩任务
+     *
+     * @param type       压缩格式
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     */
+    public static Builder compress(FileTypeEnum type, String sourcePath, String targetPath) {
+        if (type == FileTypeEnum.RAR) {
+            throw new CustomException("unsupported archive type: " + type.getTypeName());
+        }
+        JobResourceEnum resource = type == FileTypeEnum.TAR || type == FileTypeEnum.LZ4 || type == FileTypeEnum.TARLZ4
+                ? JobResourceEnum.IO : JobResourceEnum.CPU;
+        return new Builder(String.format("compress %s to %s", sourcePath, type.getTypeName()),
+                options -> CompressUtil.compress(type, sourcePath, targetPath, options)).resource(resource);
+    }
+
+    /**
+     * 解压任务
+     *
+     * @param type       压缩格式
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     */
+    public static Builder unpack(FileTypeEnum type, String sourcePath, String targetPath) {
+        JobResourceEnum resource = type == FileTypeEnum.TARXZ || type == FileTypeEnum.TARBZ2
+                ? JobResourceEnum.CPU : JobResourceEnum.IO;
+        return new Builder(String.format("unpack %s", sourcePath),
+                options -> UnpackUtil.unpack(type, sourcePath, targetPath, options)).resource(resource);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public JobResourceEnum getResource() {
+        return resource;
+    }
+
+    public ArchiveOptions getOptions() {
+        return options;
+    }
+
+    public ArchiveTask getTask() {
+        return task;
+    }
+
+    public static class Builder {
+        private final String name;
+        private final ArchiveTask task;
+        private String tenant = DEFAULT_TENANT;
+        private int priority;
+        private JobResourceEnum resource = JobResourceEnum.IO;
+        private ArchiveOptions options = ArchiveOptions.DEFAULT;
+
+        private Builder(String name, ArchiveTask task) {
+            if (task == null) {
+                throw new IllegalArgumentException("task must not be null");
+            }
+            this.name = name;
+            this.task = task;
+        }
+
+        /**
+         * 租户，同一租户同时执行的任务数受tenantConcurrency限制
+         */
+        public Builder tenant(String tenant) {
+            if (tenant == null || tenant.isEmpty()) {
+                throw new IllegalArgumentException("tenant must not be empty");
+            }
+            this.tenant = tenant;
+            return this;
+        }
+
+        /**
+         * 优先级，数值越大越先执行，相同优先级按提交顺序执行
+         */
+        public Builder priority(int priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * 主要消耗的资源，compress、unpack已按压缩格式设置
+         */
+        public Builder resource(JobResourceEnum resource) {
+            if (resource == null) {
+                throw new IllegalArgumentException("resource must not be null");
+            }
+            this.resource = resource;
+            return this;
+        }
+
+        /**
+         * 压缩、解压参数，其中的取消标记与进度监听器由任务替换
+         */
+        public Builder options(ArchiveOptions options) {
+            if (options == null) {
+                throw new IllegalArgumentException("options must not be null");
+            }
+            this.options = options;
+            return this;
+        }
+
+        public ArchiveJobRequest build() {
+            return new ArchiveJobRequest(this);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.h2t.study.job;
+
+import com.h2t.study.enums.JobResourceEnum;
+import com.h2t.study.enums.JobStateEnum;
+import com.h2t.study.exception.CustomException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 压缩、解压任务调度
+ * 任务按优先级（相同优先级按提交顺序）排队，由固定大小的线程池执行；同时执行的任务数受三重限制：
+ * <ul>
+ * <li>workers：线程数</li>
+ * <li>每个租户的并发上限，避免单个租户占满线程</li>
+ * <li>按资源类型（CPU/IO）的并发上限，计算密集与读写密集任务混合执行，避免全部线程争抢磁盘或CPU</li>
+ * </ul>
+ * 队首任务受限时，后面可以执行的任务先执行；排队任务数超过queueCapacity时拒绝提交。
+ * 开启virtualThreads且JDK支持时每个任务在一个虚拟线程上执行，调度状态用ReentrantLock保护，虚拟线程等待时不会占住载体线程
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/09 11:00
+ */
+@Service
+public class ArchiveJobService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveJobService.class);
+
+    private final ArchiveJobProperties properties;
+    private final ExecutorService executor;
+    /**
+     * 任务是否实际运行在虚拟线程上，开启virtualThreads但JDK不支持时为false
+     */
+    private final boolean virtualThreads;
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * 排队中的任务，按优先级从高到低、提交顺序从先到后排列
+     */
+    private final TreeSet<Entry> queue = new TreeSet<>();
+    private final Map<String, Integer> tenantRunning = new HashMap<>();
+    private final Map<JobResourceEnum, Integer> resourceRunning = new EnumMap<>(JobResourceEnum.class);
+    private final Set<ArchiveJob> running = new HashSet<>();
+    private long sequence;
+    private boolean shutdown;
+
+    public ArchiveJobService(ArchiveJobProperties properties) {
+        if (properties.getWorkers() <= 0 || properties.getQueueCapacity() <= 0 || properties.getTenantConcurrency() <= 0
+                || properties.getCpuSlots() <= 0 || properties.getIoSlots() <= 0) {
+            throw new IllegalArgumentException("archive.job workers, queue capacity, tenant concurrency and slots must be positive");
+        }
+        this.properties = properties;
+        ExecutorService virtualExecutor = properties.isVirtualThreads() ? createVirtualExecutor(properties) : null;
+        this.virtualThreads = virtualExecutor != null;
+        this.executor = virtualThreads ? virtualExecutor : createExecutor(properties);
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param request 任务请求
+     * @return 任务
+     */
+    public ArchiveJob submit(ArchiveJobRequest request) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new CustomException("archive job service is shut down");
+            }
+            if (queue.size() >= properties.getQueueCapacity()) {
+                throw new CustomException("archive job queue is full, capacity: " + properties.getQueueCapacity());
+            }
+            long id = ++sequence;
+            ArchiveJob job = new ArchiveJob(id, request, this);
+            queue.add(new Entry(job));
+            dispatch();
+            return job;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 排队中的任务数
+     */
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 执行中的任务数
+     */
+    public int getRunningCount() {
+        lock.lock();
+        try {
+            return running.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把排队中的任务移出队列
+     *
+     * @return false：任务已开始执行或已结束
+     */
+    boolean dequeue(ArchiveJob job) {
+        lock.lock();
+        try {
+            if (!queue.remove(new Entry(job))) {
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        job.setState(JobStateEnum.CANCELLED);
+        job.getFuture().cancel(false);
+        LOGGER.info("archive job cancelled before start: {}", job);
+        return true;
+    }
+
+    /**
+     * 关闭时取消排队和执行中的任务
+     */
+    @PreDestroy
+    public void shutdown() {
+        List<ArchiveJob> queued = new ArrayList<>();
+        lock.lock();
+        try {
+            shutdown = true;
+            for (Entry entry : queue) {
+                queued.add(entry.job);
+            }
+            running.forEach(ArchiveJob::cancel);
+        } finally {
+            lock.unlock();
+        }
+        queued.forEach(ArchiveJob::cancel);
+        executor.shutdown();
+    }
+
+    /**
+     * 任务是否运行在虚拟线程上
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器
+     *
+     * @return JDK不支持虚拟线程时返回null
+     */
+    private static ExecutorService createVirtualExecutor(ArchiveJobProperties properties) {
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("archive-job-");
+        if (executor != null) {
+            LOGGER.info("archive jobs run on virtual threads, max concurrent jobs: {}", properties.getWorkers());
+            if (properties.getIoSlots() < properties.getWorkers() || properties.getTenantConcurrency() < properties.getWorkers()) {
+                LOGGER.warn("io jobs are still limited by io slots: {} and tenant concurrency: {}, raise them with workers: {}",
+                        properties.getIoSlots(), properties.getTenantConcurrency(), properties.getWorkers());
+            }
+        } else {
+            LOGGER.warn("virtual threads are not supported by java {}, fall back to a platform thread pool", System.getProperty("java.version"));
+        }
+        return executor;
+    }
+
+    /**
+     * 创建执行任务的平台线程池
+     */
+    private static ExecutorService createExecutor(ArchiveJobProperties properties) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "archive-job-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        //任务在dispatch中按限制放行，线程池只负责执行，不会排队
+        return new ThreadPoolExecutor(properties.getWorkers(), properties.getWorkers(), 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+    /**
+     * 按队列顺序放行所有满足限制的任务，需持有lock
+     */
+    private void dispatch() {
+        Iterator<Entry> iterator = queue.iterator();
+        while (iterator.hasNext() && running.size() < properties.getWorkers()) {
+            ArchiveJob job = iterator.next().job;
+            ArchiveJobRequest request = job.getRequest();
+            if (tenantRunning.getOrDefault(request.getTenant(), 0) >= properties.tenantLimit(request.getTenant())
+                    || resourceRunning.getOrDefault(request.getResource(), 0) >= slots(request.getResource())) {
+                continue;
+            }
+            iterator.remove();
+            tenantRunning.merge(request.getTenant(), 1, Integer::sum);
+            resourceRunning.merge(request.getResource(), 1, Integer::sum);
+            running.add(job);
+            job.setState(JobStateEnum.RUNNING);
+            executor.execute(() -> run(job));
+        }
+    }
+
+    private int slots(JobResourceEnum resource) {
+        return resource == JobResourceEnum.CPU ? properties.getCpuSlots() : properties.getIoSlots();
+    }
+
+    private void run(ArchiveJob job) {
+        ArchiveJobRequest request = job.getRequest();
+        LOGGER.info("start archive job: {}, tenant: {}", request.getName(), request.getTenant());
+        long startTime = System.currentTimeMillis();
+        Throwable failure = null;
+        try {
+            request.getTask().run(job.options());
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            lock.lock();
+            try {
+                running.remove(job);
+                tenantRunning.computeIfPresent(request.getTenant(), (tenant, count) -> count > 1 ? count - 1 : null);
+                resourceRunning.computeIfPresent(request.getResource(), (resource, count) -> count > 1 ? count - 1 : null);
+                if (!shutdown) {
+                    dispatch();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long cost = System.currentTimeMillis() - startTime;
+        if (job.isCancelled()) {
+            job.setState(JobStateEnum.CANCELLED);
+            job.getFuture().cancel(false);
+            LOGGER.info("archive job cancelled: {}, cost:{} ms", request.getName(), cost);
+        } else if (failure != null) {
+            job.setState(JobStateEnum.FAILED);
+            job.getFuture().completeExceptionally(failure);
+            LOGGER.error("archive job failed: {}, cost:{} ms", request.getName(), cost, failure);
+        } else {
+            job.setState(JobStateEnum.SUCCEEDED);
+            job.getFuture().complete(null);
+            LOGGER.info("finish archive job: {}, cost:{} ms", request.getName(), cost);
+        }
+    }
+
+    /**
+     * 队列中的任务，按优先级从高到低、编号从小到大排序
+     */
+    private static class Entry implements Comparable<Entry> {
+        private final ArchiveJob job;
+
+        private Entry(ArchiveJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = Integer.compare(other.job.getRequest().getPriority(), job.getRequest().getPriority());
+            return result != 0 ? result : Long.compare(job.getId(), other.job.getId());
+        }
+    }
+}
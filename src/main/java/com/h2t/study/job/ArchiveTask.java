@@ -0,0 +1,18 @@
+package com.h2t.study.job;
+
+import com.h2t.study.util.ArchiveOptions;
+
+/**
+ * 任务的执行逻辑
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/09 10:10
+ */
+@FunctionalInterface
+public interface ArchiveTask {
+    /**
+     * @param options 在请求参数的基础上加入了任务的取消标记与进度监听器，需传给CompressUtil、UnpackUtil
+     */
+    void run(ArchiveOptions options) throws Exception;
+}
@@ -0,0 +1,38 @@
+package com.h2t.study.job;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程（JDK 21+）的反射调用，项目以Java 8编译，低版本JDK上不可用
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/10 10:00
+ */
+class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行器
+     *
+     * @param namePrefix 线程名前缀，后接从1开始的编号
+     * @return 当前JDK不支持虚拟线程时返回null
+     */
+    static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //JDK 19、20未开启预览特性时ofVirtual抛出UnsupportedOperationException
+            return null;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.h2t.study.util;
+
+import com.github.junrar.Archive;
+import com.github.junrar.exception.RarException;
+import com.github.junrar.rarfile.FileHeader;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 压缩文件列表工具类，不解压文件内容，只读取条目信息
+ * 返回的Stream按需逐个读取条目，持有打开的文件，使用完需关闭（try-with-resources）；
+ * 遍历过程中的读取异常以UncheckedIOException抛出
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/30 15:00
+ */
+public class ArchiveLister {
+    /**
+     * 未知的大小或CRC
+     */
+    public static final long UNKNOWN = -1;
+
+    private ArchiveLister() {
+    }
+
+    /**
+     * 列出zip中的条目，只读取中央目录
+     *
+     * @param sourcePath zip文件路径
+     * @return 条目信息
+     */
+    public static Stream<Entry> listZip(String sourcePath) throws IOException {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        return listZip(sourceFile);
+    }
+
+    public static Stream<Entry> listZip(File sourceFile) throws IOException {
+        ZipFile zipFile = new ZipFile(sourceFile);
+        return zipFile.stream()
+                .map(ArchiveLister::toEntry)
+                .onClose(() -> closeQuietly(zipFile));
+    }
+
+    /**
+     * 列出tar中的条目，只读取条目头，条目数据直接跳过
+     *
+     * @param sourcePath tar文件路径
+     * @return 条目信息
+     */
+    public static Stream<Entry> listTar(String sourcePath) throws IOException {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        return listTar(sourceFile, ArchiveOptions.DEFAULT);
+    }
+
+    public static Stream<Entry> listTar(File sourceFile, ArchiveOptions options) throws IOException {
+        return listTar(new BufferedInputStream(new FileInputStream(sourceFile), options.getBufferSize()));
+    }
+
+    /**
+     * 列出tar.gz中的条目
+     * tar.gz只能顺序解压，条目数据仍需解压，但不写出。
+     * 列出条目是轻量的查看操作，固定在调用线程顺序解压，不为此创建解压线程池
+     *
+     * @param sourcePath tar.gz文件路径
+     * @return 条目信息
+     */
+    public static Stream<Entry> listTarGz(String sourcePath) throws IOException {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        return listTarGz(sourceFile, ArchiveOptions.DEFAULT);
+    }
+
+    public static Stream<Entry> listTarGz(File sourceFile, ArchiveOptions options) throws IOException {
+        return listTar(new GzipCompressorInputStream(
+                new BufferedInputStream(new FileInputStream(sourceFile), options.getBufferSize()), true));
+    }
+
+    /**
+     * 列出rar中的条目，只读取条目头，条目名称统一为/分隔
+     *
+     * @param sourcePath rar文件路径
+     * @return 条目信息
+     */
+    public static Stream<Entry> listRar(String sourcePath) throws IOException {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        return listRar(sourceFile);
+    }
+
+    public static Stream<Entry> listRar(File sourceFile) throws IOException {
+        Archive archive;
+        try {
+            archive = new Archive(sourceFile, null);
+        } catch (RarException e) {
+            throw new IOException("read rar file failed: " + sourceFile.getName(), e);
+        }
+        return toStream(new EntryIterator() {
+            @Override
+            protected Entry fetch() {
+                FileHeader fileHeader = archive.nextFileHeader();
+                return fileHeader == null ? null : toEntry(fileHeader);
+            }
+        }, archive);
+    }
+
+    private static Stream<Entry> listTar(InputStream in) {
+        TarArchiveInputStream tis = new TarArchiveInputStream(in);
+        return toStream(new EntryIterator() {
+            @Override
+            protected Entry fetch() {
+                try {
+                    TarArchiveEntry entry = tis.getNextTarEntry();
+                    return entry == null ? null : toEntry(entry);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }, tis);
+    }
+
+    static Entry toEntry(ZipEntry entry) {
+        return new Entry(entry.getName(), entry.getSize(), entry.getCompressedSize(), entry.getTime(), entry.getCrc(),
+                entry.isDirectory());
+    }
+
+    static Entry toEntry(TarArchiveEntry entry) {
+        return new Entry(entry.getName(), entry.getSize(), UNKNOWN, entry.getModTime().getTime(), UNKNOWN, entry.isDirectory());
+    }
+
+    static Entry toEntry(FileHeader fileHeader) {
+        String name = fileHeader.getFileNameW().isEmpty() ? fileHeader.getFileNameString() : fileHeader.getFileNameW();
+        return new Entry(name.replace('\\', '/'), fileHeader.getFullUnpackSize(), fileHeader.getFullPackSize(),
+                fileHeader.getMTime() == null ? UNKNOWN : fileHeader.getMTime().getTime(),
+                fileHeader.getFileCRC() & 0xffffffffL, fileHeader.isDirectory());
+    }
+
+    private static Stream<Entry> toStream(Iterator<Entry> iterator, Closeable resource) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> closeQuietly(resource));
+    }
+
+    private static void closeQuietly(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 按需读取下一个条目的迭代器
+     */
+    private abstract static class EntryIterator implements Iterator<Entry> {
+        private Entry next;
+        private boolean finished;
+
+        /**
+         * @return 下一个条目，没有时返回null
+         */
+        protected abstract Entry fetch();
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !finished) {
+                next = fetch();
+                finished = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry entry = next;
+            next = null;
+            return entry;
+        }
+    }
+
+    /**
+     * 条目信息，格式中没有的信息为UNKNOWN
+     */
+    public static class Entry {
+        private final String name;
+        private final long size;
+        /**
+         * 压缩后大小，tar中没有
+         */
+        private final long compressedSize;
+        /**
+         * 修改时间（毫秒）
+         */
+        private final long lastModified;
+        /**
+         * CRC32，tar中没有
+         */
+        private final long crc;
+        private final boolean directory;
+
+        private Entry(String name, long size, long compressedSize, long lastModified, long crc, boolean directory) {
+            this.name = name;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.lastModified = lastModified;
+            this.crc = crc;
+            this.directory = directory;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "name='" + name + '\'' +
+                    ", size=" + size +
+                    ", compressedSize=" + compressedSize +
+                    ", lastModified=" + lastModified +
+                    ", crc=" + crc +
+                    ", directory=" + directory +
+                    '}';
+        }
+    }
+}
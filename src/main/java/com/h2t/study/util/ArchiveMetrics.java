@@ -0,0 +1,149 @@
+package com.h2t.study.util;
+
+import com.h2t.study.enums.FileTypeEnum;
+import io.micrometer.core.instrument.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压缩、解压指标，通过Micrometer按操作（compress/unpack）与格式输出
+ * <ul>
+ * <li>archive.operation：耗时，附带outcome（success/error/cancelled），发布百分位直方图，可聚合出各格式的p99</li>
+ * <li>archive.bytes.in/archive.bytes.out：读入、写出的字节数，压缩时读入为原始数据，解压时读入为压缩数据</li>
+ * <li>archive.entries：处理的文件条目数</li>
+ * <li>archive.compression.ratio：压缩比（原始大小/压缩后大小）的分布</li>
+ * <li>archive.errors：失败次数，附带异常类型，取消不计入</li>
+ * </ul>
+ * 默认记录到Metrics.globalRegistry，Spring Boot应用中由CompressUnpackApplication绑定到应用的MeterRegistry
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/07 10:00
+ */
+public class ArchiveMetrics {
+    public static final String COMPRESS = "compress";
+    public static final String UNPACK = "unpack";
+
+    private static volatile MeterRegistry registry = Metrics.globalRegistry;
+
+    private ArchiveMetrics() {
+    }
+
+    /**
+     * 指定记录指标的MeterRegistry，可作为MeterBinder使用：ArchiveMetrics::bindTo
+     *
+     * @param meterRegistry MeterRegistry
+     */
+    public static void bindTo(MeterRegistry meterRegistry) {
+        registry = meterRegistry;
+    }
+
+    /**
+     * 开始记录一次压缩或解压
+     *
+     * @param operation COMPRESS或UNPACK
+     * @param type      压缩格式
+     * @return 本次操作的记录
+     */
+    static Recording start(String operation, FileTypeEnum type) {
+        return new Recording(registry, operation, type.getTypeName());
+    }
+
+    /**
+     * 一次压缩或解压的记录，条目可由多个线程同时累加
+     */
+    static class Recording {
+        private final MeterRegistry meterRegistry;
+        private final Tags tags;
+        private final String operation;
+        private final Timer.Sample sample;
+        private final LongAdder entries = new LongAdder();
+        private final LongAdder uncompressedBytes = new LongAdder();
+        private volatile long compressedBytes;
+        private volatile Throwable failure;
+        private volatile boolean cancelled;
+
+        private Recording(MeterRegistry meterRegistry, String operation, String format) {
+            this.meterRegistry = meterRegistry;
+            this.operation = operation;
+            this.tags = Tags.of("operation", operation, "format", format);
+            this.sample = Timer.start(meterRegistry);
+        }
+
+        /**
+         * 处理完一个文件条目
+         *
+         * @param size 条目的原始大小，未知时（小于0）只计条目数
+         */
+        void entry(long size) {
+            entries.increment();
+            if (size > 0) {
+                uncompressedBytes.add(size);
+            }
+        }
+
+        /**
+         * @param size 压缩数据的大小
+         */
+        void compressedSize(long size) {
+            compressedBytes = size;
+        }
+
+        void fail(Throwable e) {
+            failure = e;
+        }
+
+        /**
+         * 被取消，outcome记为cancelled，不计入archive.errors
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * 结束记录并输出指标
+         *
+         * @return 耗时（ms），用于日志
+         */
+        long stop() {
+            Throwable error = cancelled ? null : failure;
+            String outcome = cancelled ? "cancelled" : error == null ? "success" : "error";
+            long nanos = sample.stop(Timer.builder("archive.operation")
+                    .description("archive compress/unpack latency")
+                    .tags(tags)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            if (error != null) {
+                Counter.builder("archive.errors")
+                        .tags(tags)
+                        .tag("exception", error.getClass().getSimpleName())
+                        .register(meterRegistry)
+                        .increment();
+            }
+
+            long uncompressed = uncompressedBytes.sum();
+            long compressed = compressedBytes;
+            boolean compress = COMPRESS.equals(operation);
+            count("archive.bytes.in", compress ? uncompressed : compressed, "bytes");
+            count("archive.bytes.out", compress ? compressed : uncompressed, "bytes");
+            count("archive.entries", entries.sum(), null);
+            if ("success".equals(outcome) && uncompressed > 0 && compressed > 0) {
+                DistributionSummary.builder("archive.compression.ratio")
+                        .description("uncompressed size / compressed size")
+                        .tags(tags)
+                        .publishPercentiles(0.5, 0.9, 0.99)
+                        .register(meterRegistry)
+                        .record((double) uncompressed / compressed);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        private void count(String name, long amount, String baseUnit) {
+            if (amount > 0) {
+                Counter.builder(name).baseUnit(baseUnit).tags(tags).register(meterRegistry).increment(amount);
+            }
+        }
+    }
+}
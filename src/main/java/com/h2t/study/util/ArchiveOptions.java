@@ -0,0 +1,527 @@
+package com.h2t.study.util;
+
+import com.h2t.study.enums.CompressProfileEnum;
+
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
+
+/**
+ * 压缩、解压参数
+ * 通过Builder构建，构建后不可变，可在多个线程间共享
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/17 10:30
+ */
+public class ArchiveOptions {
+    /**
+     * 默认读写缓冲区大小：64KB
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /**
+     * zstd默认压缩级别
+     */
+    public static final int DEFAULT_ZSTD_LEVEL = 3;
+    /**
+     * xz默认预设级别
+     */
+    public static final int DEFAULT_XZ_PRESET = 6;
+    /**
+     * bzip2默认块大小：900KB
+     */
+    public static final int DEFAULT_BZIP2_BLOCK_SIZE = 9;
+    /**
+     * 异步写入默认的最大在途写请求数
+     */
+    public static final int DEFAULT_ASYNC_WRITE_DEPTH = 8;
+    /**
+     * 流水线各级之间默认的环形缓冲区块数
+     */
+    public static final int DEFAULT_PIPELINE_BLOCKS = 16;
+    /**
+     * 默认参数
+     */
+    public static final ArchiveOptions DEFAULT = builder().build();
+
+    /**
+     * 读写缓冲区大小
+     */
+    private final int bufferSize;
+    /**
+     * 是否复用线程内的缓冲区
+     */
+    private final boolean bufferPooled;
+    /**
+     * 是否使用FileChannel.transferTo零拷贝写入未压缩的条目内容
+     */
+    private final boolean zeroCopy;
+    /**
+     * 解压tar、zip时是否使用内存映射读取器
+     */
+    private final boolean memoryMapped;
+    /**
+     * 压缩zip时是否对不可压缩的文件自动改为STORED
+     */
+    private final boolean adaptiveStore;
+    /**
+     * deflate压缩级别，zip、gz、tar.gz通用
+     */
+    private final int compressLevel;
+    /**
+     * deflate压缩策略，zip、gz、tar.gz通用
+     */
+    private final int compressStrategy;
+    /**
+     * gzip分块并行压缩及多member的gzip并行解压的线程数
+     */
+    private final int gzipWorkers;
+    /**
+     * zstd压缩级别
+     */
+    private final int zstdLevel;
+    /**
+     * zstd压缩线程数，大于1时启用zstd多线程压缩
+     */
+    private final int zstdWorkers;
+    /**
+     * xz预设级别
+     */
+    private final int xzPreset;
+    /**
+     * xz分块并行压缩、解压的线程数
+     */
+    private final int xzWorkers;
+    /**
+     * bzip2块大小，单位100KB
+     */
+    private final int bzip2BlockSize;
+    /**
+     * bzip2分块并行压缩、解压的线程数
+     */
+    private final int bzip2Workers;
+    /**
+     * zip并行压缩、解压的线程数
+     */
+    private final int parallelism;
+    /**
+     * 共享线程池，不为null时并行压缩、解压的任务提交到该线程池而不是各自创建线程池，由调用方负责关闭
+     */
+    private final ExecutorService executor;
+    /**
+     * 解压时是否通过AsynchronousFileChannel异步写出文件
+     */
+    private final boolean asyncWrite;
+    /**
+     * 异步写入的最大在途写请求数，每个请求一个缓冲区
+     */
+    private final int asyncWriteDepth;
+    /**
+     * 是否按读取、解压（压缩）、写出三级流水线处理
+     */
+    private final boolean pipelined;
+    /**
+     * 流水线各级之间的环形缓冲区块数，每块bufferSize大小
+     */
+    private final int pipelineBlocks;
+    /**
+     * 进度监听器，为null时不回调
+     */
+    private final ProgressListener progressListener;
+    /**
+     * 取消标记，为null时不可取消
+     */
+    private final CancellationToken cancellationToken;
+
+    private ArchiveOptions(Builder builder) {
+        this.bufferSize = builder.bufferSize;
+        this.bufferPooled = builder.bufferPooled;
+        this.zeroCopy = builder.zeroCopy;
+        this.memoryMapped = builder.memoryMapped;
+        this.adaptiveStore = builder.adaptiveStore;
+        this.compressLevel = builder.compressLevel;
+        this.compressStrategy = builder.compressStrategy;
+        this.gzipWorkers = builder.gzipWorkers;
+        this.zstdLevel = builder.zstdLevel;
+        this.zstdWorkers = builder.zstdWorkers;
+        this.xzPreset = builder.xzPreset;
+        this.xzWorkers = builder.xzWorkers;
+        this.bzip2BlockSize = builder.bzip2BlockSize;
+        this.bzip2Workers = builder.bzip2Workers;
+        this.parallelism = builder.parallelism;
+        this.executor = builder.executor;
+        this.asyncWrite = builder.asyncWrite;
+        this.asyncWriteDepth = builder.asyncWriteDepth;
+        this.pipelined = builder.pipelined;
+        this.pipelineBlocks = builder.pipelineBlocks;
+        this.progressListener = builder.progressListener;
+        this.cancellationToken = builder.cancellationToken;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 以当前参数为初始值的Builder
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.bufferSize = bufferSize;
+        builder.bufferPooled = bufferPooled;
+        builder.zeroCopy = zeroCopy;
+        builder.memoryMapped = memoryMapped;
+        builder.adaptiveStore = adaptiveStore;
+        builder.compressLevel = compressLevel;
+        builder.compressStrategy = compressStrategy;
+        builder.gzipWorkers = gzipWorkers;
+        builder.zstdLevel = zstdLevel;
+        builder.zstdWorkers = zstdWorkers;
+        builder.xzPreset = xzPreset;
+        builder.xzWorkers = xzWorkers;
+        builder.bzip2BlockSize = bzip2BlockSize;
+        builder.bzip2Workers = bzip2Workers;
+        builder.parallelism = parallelism;
+        builder.executor = executor;
+        builder.asyncWrite = asyncWrite;
+        builder.asyncWriteDepth = asyncWriteDepth;
+        builder.pipelined = pipelined;
+        builder.pipelineBlocks = pipelineBlocks;
+        builder.progressListener = progressListener;
+        builder.cancellationToken = cancellationToken;
+        return builder;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public boolean isBufferPooled() {
+        return bufferPooled;
+    }
+
+    public boolean isZeroCopy() {
+        return zeroCopy;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    public boolean isAdaptiveStore() {
+        return adaptiveStore;
+    }
+
+    public int getCompressLevel() {
+        return compressLevel;
+    }
+
+    public int getCompressStrategy() {
+        return compressStrategy;
+    }
+
+    public int getGzipWorkers() {
+        return gzipWorkers;
+    }
+
+    public int getZstdLevel() {
+        return zstdLevel;
+    }
+
+    public int getZstdWorkers() {
+        return zstdWorkers;
+    }
+
+    public int getXzPreset() {
+        return xzPreset;
+    }
+
+    public int getXzWorkers() {
+        return xzWorkers;
+    }
+
+    public int getBzip2BlockSize() {
+        return bzip2BlockSize;
+    }
+
+    public int getBzip2Workers() {
+        return bzip2Workers;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public boolean isAsyncWrite() {
+        return asyncWrite;
+    }
+
+    public int getAsyncWriteDepth() {
+        return asyncWriteDepth;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    public int getPipelineBlocks() {
+        return pipelineBlocks;
+    }
+
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * 获取拷贝用的缓冲区，开启复用时返回当前线程缓存的缓冲区
+     *
+     * @return 缓冲区
+     */
+    public byte[] allocateBuffer() {
+        return BufferAllocator.allocate(bufferSize, bufferPooled);
+    }
+
+    public static class Builder {
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+        private boolean bufferPooled = true;
+        private boolean zeroCopy = true;
+        private boolean memoryMapped;
+        private boolean adaptiveStore = true;
+        private int compressLevel = CompressProfileEnum.BALANCED.getLevel();
+        private int compressStrategy = CompressProfileEnum.BALANCED.getStrategy();
+        private int gzipWorkers = Runtime.getRuntime().availableProcessors();
+        private int zstdLevel = DEFAULT_ZSTD_LEVEL;
+        private int zstdWorkers = Runtime.getRuntime().availableProcessors();
+        private int xzPreset = DEFAULT_XZ_PRESET;
+        private int xzWorkers = Runtime.getRuntime().availableProcessors();
+        private int bzip2BlockSize = DEFAULT_BZIP2_BLOCK_SIZE;
+        private int bzip2Workers = Runtime.getRuntime().availableProcessors();
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private ExecutorService executor;
+        private boolean asyncWrite;
+        private int asyncWriteDepth = DEFAULT_ASYNC_WRITE_DEPTH;
+        private boolean pipelined;
+        private int pipelineBlocks = DEFAULT_PIPELINE_BLOCKS;
+        private ProgressListener progressListener;
+        private CancellationToken cancellationToken;
+
+        private Builder() {
+        }
+
+        public Builder bufferSize(int bufferSize) {
+            if (bufferSize <= 0) {
+                throw new IllegalArgumentException("buffer size must be positive");
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public Builder bufferPooled(boolean bufferPooled) {
+            this.bufferPooled = bufferPooled;
+            return this;
+        }
+
+        public Builder zeroCopy(boolean zeroCopy) {
+            this.zeroCopy = zeroCopy;
+            return this;
+        }
+
+        public Builder memoryMapped(boolean memoryMapped) {
+            this.memoryMapped = memoryMapped;
+            return this;
+        }
+
+        public Builder adaptiveStore(boolean adaptiveStore) {
+            this.adaptiveStore = adaptiveStore;
+            return this;
+        }
+
+        /**
+         * 使用预设的压缩级别与策略
+         */
+        public Builder compressProfile(CompressProfileEnum profile) {
+            this.compressLevel = profile.getLevel();
+            this.compressStrategy = profile.getStrategy();
+            return this;
+        }
+
+        /**
+         * 压缩级别，-1（默认）或0~9
+         */
+        public Builder compressLevel(int compressLevel) {
+            if ((compressLevel < Deflater.NO_COMPRESSION || compressLevel > Deflater.BEST_COMPRESSION)
+                    && compressLevel != Deflater.DEFAULT_COMPRESSION) {
+                throw new IllegalArgumentException("invalid compress level: " + compressLevel);
+            }
+            this.compressLevel = compressLevel;
+            return this;
+        }
+
+        /**
+         * 压缩策略，Deflater.DEFAULT_STRATEGY、FILTERED或HUFFMAN_ONLY
+         */
+        public Builder compressStrategy(int compressStrategy) {
+            if (compressStrategy != Deflater.DEFAULT_STRATEGY && compressStrategy != Deflater.FILTERED
+                    && compressStrategy != Deflater.HUFFMAN_ONLY) {
+                throw new IllegalArgumentException("invalid compress strategy: " + compressStrategy);
+            }
+            this.compressStrategy = compressStrategy;
+            return this;
+        }
+
+        /**
+         * gzip分块并行压缩及多member的gzip并行解压的线程数，小于等于1时在调用线程压缩、顺序解压
+         */
+        public Builder gzipWorkers(int gzipWorkers) {
+            this.gzipWorkers = gzipWorkers;
+            return this;
+        }
+
+        /**
+         * zstd压缩级别，1~22，负数为更快的fast级别
+         */
+        public Builder zstdLevel(int zstdLevel) {
+            this.zstdLevel = zstdLevel;
+            return this;
+        }
+
+        /**
+         * zstd压缩线程数，小于等于1时单线程压缩
+         */
+        public Builder zstdWorkers(int zstdWorkers) {
+            this.zstdWorkers = zstdWorkers;
+            return this;
+        }
+
+        /**
+         * xz预设级别，0~9
+         */
+        public Builder xzPreset(int xzPreset) {
+            if (xzPreset < 0 || xzPreset > 9) {
+                throw new IllegalArgumentException("invalid xz preset: " + xzPreset);
+            }
+            this.xzPreset = xzPreset;
+            return this;
+        }
+
+        /**
+         * xz分块并行压缩、解压的线程数，小于等于1时单线程处理
+         */
+        public Builder xzWorkers(int xzWorkers) {
+            this.xzWorkers = xzWorkers;
+            return this;
+        }
+
+        /**
+         * bzip2块大小，1~9，单位100KB
+         */
+        public Builder bzip2BlockSize(int bzip2BlockSize) {
+            if (bzip2BlockSize < 1 || bzip2BlockSize > 9) {
+                throw new IllegalArgumentException("invalid bzip2 block size: " + bzip2BlockSize);
+            }
+            this.bzip2BlockSize = bzip2BlockSize;
+            return this;
+        }
+
+        /**
+         * bzip2分块并行压缩、解压的线程数，小于等于1时单线程处理
+         */
+        public Builder bzip2Workers(int bzip2Workers) {
+            this.bzip2Workers = bzip2Workers;
+            return this;
+        }
+
+        /**
+         * zip并行压缩、解压的线程数，为1时压缩只用一个工作线程、解压在调用线程顺序进行
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("parallelism must be positive");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * 共享线程池，多个压缩、解压共用同一组线程，各线程数参数只限制单次操作的在途任务数
+         */
+        public Builder executor(ExecutorService executor) {
+            if (executor == null) {
+                throw new IllegalArgumentException("executor must not be null");
+            }
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * 解压时异步写出文件，解压线程只负责填充缓冲区，写盘与解压重叠进行
+         */
+        public Builder asyncWrite(boolean asyncWrite) {
+            this.asyncWrite = asyncWrite;
+            return this;
+        }
+
+        /**
+         * 异步写入的最大在途写请求数，达到上限时解压线程等待写入完成
+         */
+        public Builder asyncWriteDepth(int asyncWriteDepth) {
+            if (asyncWriteDepth <= 0) {
+                throw new IllegalArgumentException("async write depth must be positive");
+            }
+            this.asyncWriteDepth = asyncWriteDepth;
+            return this;
+        }
+
+        /**
+         * 读取、解压（压缩）、写出分别在不同线程进行，各级之间以预分配的环形缓冲区连接
+         */
+        public Builder pipelined(boolean pipelined) {
+            this.pipelined = pipelined;
+            return this;
+        }
+
+        /**
+         * 流水线各级之间的环形缓冲区块数，缓冲区满时上一级等待
+         */
+        public Builder pipelineBlocks(int pipelineBlocks) {
+            if (pipelineBlocks <= 0) {
+                throw new IllegalArgumentException("pipeline blocks must be positive");
+            }
+            this.pipelineBlocks = pipelineBlocks;
+            return this;
+        }
+
+        /**
+         * 进度监听器，回调条目开始、完成以及处理的字节数与估算的剩余时间
+         */
+        public Builder progressListener(ProgressListener progressListener) {
+            if (progressListener == null) {
+                throw new IllegalArgumentException("progress listener must not be null");
+            }
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        /**
+         * 取消标记，调用cancel后正在进行的压缩、解压尽快中止
+         */
+        public Builder cancellationToken(CancellationToken cancellationToken) {
+            if (cancellationToken == null) {
+                throw new IllegalArgumentException("cancellation token must not be null");
+            }
+            this.cancellationToken = cancellationToken;
+            return this;
+        }
+
+        public ArchiveOptions build() {
+            return new ArchiveOptions(this);
+        }
+    }
+}
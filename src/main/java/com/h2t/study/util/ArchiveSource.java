@@ -0,0 +1,91 @@
+package com.h2t.study.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 内存/流中的待压缩条目，用于不经过文件系统的压缩
+ * tar条目头中需写入大小，因此每个条目需预先知道大小
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/31 10:00
+ */
+public class ArchiveSource {
+    private final String name;
+    private final long size;
+    private final long lastModified;
+    private final Opener opener;
+
+    private ArchiveSource(String name, long size, long lastModified, Opener opener) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must not be negative");
+        }
+        this.name = name;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.opener = opener;
+    }
+
+    /**
+     * @param name 条目名称，以/分隔
+     * @param data 条目内容
+     */
+    public static ArchiveSource of(String name, byte[] data) {
+        return new ArchiveSource(name, data.length, System.currentTimeMillis(), () -> new ByteArrayInputStream(data));
+    }
+
+    /**
+     * 读取position到limit之间的内容，不改变buffer的position
+     *
+     * @param name 条目名称，以/分隔
+     * @param data 条目内容
+     */
+    public static ArchiveSource of(String name, ByteBuffer data) {
+        return new ArchiveSource(name, data.remaining(), System.currentTimeMillis(), () -> IoStreams.newInputStream(data));
+    }
+
+    /**
+     * @param name   条目名称，以/分隔
+     * @param size   条目大小，必须与opener读出的字节数一致
+     * @param opener 压缩时打开条目内容，读完后关闭
+     */
+    public static ArchiveSource of(String name, long size, Opener opener) {
+        return new ArchiveSource(name, size, System.currentTimeMillis(), opener);
+    }
+
+    /**
+     * 指定修改时间的副本
+     *
+     * @param lastModified 修改时间（毫秒）
+     */
+    public ArchiveSource lastModified(long lastModified) {
+        return new ArchiveSource(name, size, lastModified, opener);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public InputStream open() throws IOException {
+        return opener.open();
+    }
+
+    /**
+     * 条目内容的打开方式
+     */
+    @FunctionalInterface
+    public interface Opener {
+        InputStream open() throws IOException;
+    }
+}
@@ -0,0 +1,236 @@
+package com.h2t.study.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 异步文件写入器
+ * 解压线程把数据写入缓冲区，缓冲区写满后交给AsynchronousFileChannel异步写出，解压线程继续解压，写盘与解压重叠进行。
+ * 在途写请求数有上限，达到上限时解压线程等待；单个文件关闭时不等待写入完成，
+ * 同一次解压的所有文件在写入器关闭时统一等待写完，写入失败在之后的写入或关闭写入器时抛出。
+ * 文件名无法按sun.jnu.encoding转换为Path（如非UTF-8环境下的中文文件名）时，该文件改为同步写入，与同步解压的行为一致
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/02 10:00
+ */
+public class AsyncFileWriter implements TargetWriter {
+    private final int bufferSize;
+    private final int depth;
+    private final Semaphore inFlight;
+    private final Queue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private boolean closed;
+
+    /**
+     * 按参数中的缓冲区大小与在途写请求数写入
+     *
+     * @param options 解压参数
+     */
+    public AsyncFileWriter(ArchiveOptions options) {
+        this(options.getAsyncWriteDepth(), options.getBufferSize());
+    }
+
+    /**
+     * @param depth      最大在途写请求数
+     * @param bufferSize 每个写请求的缓冲区大小
+     */
+    public AsyncFileWriter(int depth, int bufferSize) {
+        if (depth <= 0 || bufferSize <= 0) {
+            throw new IllegalArgumentException("depth and buffer size must be positive");
+        }
+        this.depth = depth;
+        this.bufferSize = bufferSize;
+        this.inFlight = new Semaphore(depth);
+    }
+
+    /**
+     * 创建（或清空）文件并返回写入该文件的输出流，输出流需关闭，多个线程可各自打开文件
+     *
+     * @param file 目标文件
+     * @return 输出流
+     */
+    @Override
+    public OutputStream open(File file) throws IOException {
+        checkFailure();
+        Path path;
+        try {
+            path = file.toPath();
+        } catch (InvalidPathException e) {
+            return new FileOutputStream(file);
+        }
+        AsynchronousFileChannel channel = AsynchronousFileChannel.open(path,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new FileSink(channel);
+    }
+
+    /**
+     * 等待所有在途写请求完成，有写入失败时抛出
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        inFlight.acquireUninterruptibly(depth);
+        inFlight.release(depth);
+        freeBuffers.clear();
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new IOException("async write failed", cause);
+        }
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = freeBuffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    private void recycle(ByteBuffer buffer) {
+        buffer.clear();
+        freeBuffers.offer(buffer);
+    }
+
+    /**
+     * 单个文件的输出流，只能在一个线程内使用
+     */
+    private class FileSink extends OutputStream {
+        private final AsynchronousFileChannel channel;
+        /**
+         * 在途写请求数，未关闭时额外加1，归零时关闭channel
+         */
+        private final AtomicInteger references = new AtomicInteger(1);
+        private ByteBuffer current;
+        private long position;
+        private boolean sinkClosed;
+
+        private FileSink(AsynchronousFileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (sinkClosed) {
+                throw new IOException("stream closed");
+            }
+            checkFailure();
+            while (len > 0) {
+                if (current == null) {
+                    current = takeBuffer();
+                }
+                int n = Math.min(len, current.remaining());
+                current.put(b, off, n);
+                off += n;
+                len -= n;
+                if (!current.hasRemaining()) {
+                    submit();
+                }
+            }
+        }
+
+        /**
+         * 不等待写入完成，关闭后由channel在最后一个写请求完成时关闭
+         */
+        @Override
+        public void close() throws IOException {
+            if (sinkClosed) {
+                return;
+            }
+            sinkClosed = true;
+            try {
+                if (current != null && current.position() > 0) {
+                    submit();
+                } else if (current != null) {
+                    recycle(current);
+                    current = null;
+                }
+            } finally {
+                release();
+            }
+        }
+
+        private void submit() throws IOException {
+            ByteBuffer buffer = current;
+            current = null;
+            buffer.flip();
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                recycle(buffer);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("async write interrupted");
+            }
+            references.incrementAndGet();
+            long base = position;
+            position += buffer.remaining();
+            write(buffer, base);
+        }
+
+        /**
+         * 从buffer当前位置继续写，base为buffer开头对应的文件位置，未写完时继续写剩余部分
+         */
+        private void write(ByteBuffer buffer, long base) {
+            try {
+                channel.write(buffer, base + buffer.position(), buffer, new CompletionHandler<Integer, ByteBuffer>() {
+                    @Override
+                    public void completed(Integer result, ByteBuffer attachment) {
+                        if (attachment.hasRemaining()) {
+                            write(attachment, base);
+                        } else {
+                            finish(attachment);
+                        }
+                    }
+
+                    @Override
+                    public void failed(Throwable exc, ByteBuffer attachment) {
+                        failure.compareAndSet(null, exc);
+                        finish(attachment);
+                    }
+                });
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                finish(buffer);
+            }
+        }
+
+        private void finish(ByteBuffer buffer) {
+            recycle(buffer);
+            release();
+            inFlight.release();
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+    }
+}
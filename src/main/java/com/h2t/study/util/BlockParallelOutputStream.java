@@ -0,0 +1,179 @@
+package com.h2t.study.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 分块并行压缩输出流
+ * 输入按固定大小分块，每块在线程池中独立压缩为一个完整的压缩stream，按顺序拼接输出。
+ * 适用于允许多个stream首尾相接的格式（xz、bzip2），每块可独立解压。
+ * 出现第二块时才创建线程池（或使用参数中的共享线程池），输入不超过一块时在调用线程直接压缩
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/24 10:30
+ */
+public abstract class BlockParallelOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final int blockSize;
+    private final int threads;
+    /**
+     * 共享线程池，为null时出现第二块后创建本流专用的线程池
+     */
+    private final ExecutorService shared;
+    /**
+     * 允许同时在途的压缩块数量，每块需占用一份输入与输出缓冲，控制内存占用
+     */
+    private final int maxPending;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final String name;
+
+    private ExecutorService executor;
+    private byte[] block;
+    private int blockLength;
+    /**
+     * 暂存的第一块，出现第二块时才提交到线程池；只有一块时在调用线程压缩
+     */
+    private byte[] firstBlock;
+    private int firstLength;
+    private boolean submitted;
+    private boolean closed;
+
+    /**
+     * @param out       输出流
+     * @param blockSize 分块大小
+     * @param workers   压缩线程数，小于等于1时在调用线程逐块压缩
+     * @param name      压缩格式名称，用于异常信息
+     */
+    protected BlockParallelOutputStream(OutputStream out, int blockSize, int workers, String name) {
+        this(out, blockSize, workers, null, name);
+    }
+
+    /**
+     * @param out       输出流
+     * @param blockSize 分块大小
+     * @param workers   压缩线程数（使用共享线程池时为在途块数），小于等于1时在调用线程逐块压缩
+     * @param shared    共享线程池，可为null
+     * @param name      压缩格式名称，用于异常信息
+     */
+    protected BlockParallelOutputStream(OutputStream out, int blockSize, int workers, ExecutorService shared, String name) {
+        this.threads = Math.max(1, workers);
+        this.out = out;
+        this.blockSize = blockSize;
+        this.maxPending = threads + 1;
+        this.shared = shared;
+        this.name = name;
+        this.block = new byte[blockSize];
+    }
+
+    /**
+     * 将一块数据压缩为一个完整的压缩stream，在工作线程中调用
+     *
+     * @param data   数据
+     * @param length 数据长度
+     * @return 压缩结果
+     */
+    protected abstract byte[] compressBlock(byte[] data, int length) throws IOException;
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        while (len > 0) {
+            int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            //空输入也要输出一个合法的stream
+            if (blockLength > 0 || !submitted) {
+                submitBlock();
+            }
+            if (firstBlock != null) {
+                out.write(compressBlock(firstBlock, firstLength));
+                firstBlock = null;
+            }
+            while (!pending.isEmpty()) {
+                writeHead();
+            }
+            out.flush();
+        } finally {
+            if (executor != null && executor != shared) {
+                executor.shutdownNow();
+            } else {
+                pending.forEach(future -> future.cancel(true));
+            }
+            out.close();
+        }
+    }
+
+    /**
+     * 提交当前块进行压缩，在途块过多时先写出最早的块
+     */
+    private void submitBlock() throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        block = closed ? null : new byte[blockSize];
+        blockLength = 0;
+        if (threads <= 1) {
+            submitted = true;
+            out.write(compressBlock(data, length));
+            return;
+        }
+        if (!submitted) {
+            submitted = true;
+            firstBlock = data;
+            firstLength = length;
+            return;
+        }
+        if (executor == null) {
+            executor = shared != null ? shared : Executors.newFixedThreadPool(threads);
+            submit(firstBlock, firstLength);
+            firstBlock = null;
+        }
+        submit(data, length);
+    }
+
+    private void submit(byte[] data, int length) throws IOException {
+        pending.addLast(executor.submit(() -> compressBlock(data, length)));
+        while (pending.size() >= maxPending) {
+            writeHead();
+        }
+    }
+
+    private void writeHead() throws IOException {
+        try {
+            out.write(pending.removeFirst().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("parallel " + name + " interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("parallel " + name + " compress failed", e.getCause());
+        }
+    }
+}
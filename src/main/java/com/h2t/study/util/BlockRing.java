@@ -0,0 +1,176 @@
+package com.h2t.study.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 预分配的有界环形块缓冲区，连接流水线中相邻的两级（单生产者、单消费者）
+ * 生产者申请空闲块、填充后发布，消费者按发布顺序取出、处理后归还。
+ * 块全部在用时生产者等待（背压），内存占用固定为blockCount * blockSize；任一方失败后另一方在下一次等待时抛出异常
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/03 10:00
+ */
+public class BlockRing {
+    private final byte[][] blocks;
+    private final int[] lengths;
+    private final Object[] tags;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * 消费者下一个取出的块
+     */
+    private int head;
+    /**
+     * 生产者下一个填充的块
+     */
+    private int tail;
+    /**
+     * 已发布、尚未归还的块数
+     */
+    private int count;
+    private boolean finished;
+    private Throwable failure;
+
+    /**
+     * @param blockCount 块数
+     * @param blockSize  块大小
+     */
+    public BlockRing(int blockCount, int blockSize) {
+        if (blockCount <= 0 || blockSize <= 0) {
+            throw new IllegalArgumentException("block count and block size must be positive");
+        }
+        this.blocks = new byte[blockCount][blockSize];
+        this.lengths = new int[blockCount];
+        this.tags = new Object[blockCount];
+    }
+
+    /**
+     * 生产者等待并返回下一个空闲块，发布前可多次调用，返回同一块
+     *
+     * @return 空闲块
+     */
+    public byte[] claim() throws IOException {
+        lock.lock();
+        try {
+            while (count == blocks.length && failure == null) {
+                notFull.await();
+            }
+            checkFailure();
+            return blocks[tail];
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("block ring interrupted");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 发布claim得到的块
+     *
+     * @param length 有效数据长度，含义由两级自行约定
+     * @param tag    随块传递的附加信息，可为null
+     */
+    public void publish(int length, Object tag) throws IOException {
+        lock.lock();
+        try {
+            checkFailure();
+            lengths[tail] = length;
+            tags[tail] = tag;
+            tail = (tail + 1) % blocks.length;
+            count++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 生产者结束，消费者取完已发布的块后take返回false
+     */
+    public void finish() {
+        lock.lock();
+        try {
+            finished = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 任一方失败，唤醒并中止另一方
+     */
+    public void fail(Throwable cause) {
+        lock.lock();
+        try {
+            if (failure == null) {
+                failure = cause;
+            }
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 消费者等待下一个已发布的块，通过block、length、tag读取后调用release归还
+     *
+     * @return false：生产者已结束且块已取完
+     */
+    public boolean take() throws IOException {
+        lock.lock();
+        try {
+            while (count == 0 && !finished && failure == null) {
+                notEmpty.await();
+            }
+            checkFailure();
+            return count > 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("block ring interrupted");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public byte[] block() {
+        return blocks[head];
+    }
+
+    public int length() {
+        return lengths[head];
+    }
+
+    public Object tag() {
+        return tags[head];
+    }
+
+    /**
+     * 消费者归还当前块
+     */
+    public void release() {
+        lock.lock();
+        try {
+            tags[head] = null;
+            head = (head + 1) % blocks.length;
+            count--;
+            notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("pipeline stage failed", failure);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.h2t.study.util;
+
+/**
+ * 缓冲区分配器
+ * 每个线程缓存一块缓冲区，拷贝循环中不再按文件重复分配
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/17 10:45
+ */
+public class BufferAllocator {
+    private static final ThreadLocal<byte[]> BUFFER_CACHE = new ThreadLocal<>();
+
+    private BufferAllocator() {
+    }
+
+    /**
+     * 分配缓冲区
+     * 调用方只能在当前线程内、下一次分配之前使用返回的缓冲区
+     *
+     * @param size   缓冲区大小
+     * @param pooled 是否复用线程缓存的缓冲区
+     * @return 缓冲区
+     */
+    public static byte[] allocate(int size, boolean pooled) {
+        if (!pooled) {
+            return new byte[size];
+        }
+        byte[] buffer = BUFFER_CACHE.get();
+        if (buffer == null || buffer.length != size) {
+            buffer = new byte[size];
+            BUFFER_CACHE.set(buffer);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,22 @@
+package com.h2t.study.util;
+
+/**
+ * 取消标记，通过ArchiveOptions传入，可在任意线程调用cancel
+ * 压缩、解压在每个条目开始时以及拷贝循环的每个缓冲区检查该标记，取消后抛出ArchiveCancelledException，
+ * 并删除未写完的文件（压缩时为整个压缩文件，解压时为正在写出的条目）
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/08 10:10
+ */
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -1,17 +1,22 @@
 package com.h2t.study.util;
 
 import com.h2t.study.enums.FileTypeEnum;
+import com.h2t.study.exception.ArchiveCancelledException;
+import com.h2t.study.exception.CustomException;
+import com.h2t.study.exception.SourceReadException;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.utils.CountingOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.util.zip.CRC32;
-import java.util.zip.CheckedOutputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 压缩工具类
@@ -21,7 +26,6 @@ import java.util.zip.ZipOutputStream;
  * @Date 2019/12/10 10:09
  */
 public class CompressUtil {
-    private static final int BUFFER = 1024;
     private final static Logger LOGGER = LoggerFactory.getLogger(CompressUtil.class);
 
     /**
@@ -31,8 +35,19 @@ public class CompressUtil {
      * @param targetPath 压缩文件保存地址
      */
     public static void compressToZip(String sourcePath, String targetPath) {
+        compressToZip(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 压缩为zip格式，支持文件、文件夹的压缩
+     *
+     * @param sourcePath 被压缩文件地址
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数
+     */
+    public static void compressToZip(String sourcePath, String targetPath, ArchiveOptions options) {
         File sourceFile = FileUtil.validateSourcePath(sourcePath);
-        compressToZip(sourceFile, targetPath);
+        compressToZip(sourceFile, targetPath, options);
     }
 
     /**
@@ -42,41 +57,75 @@ public class CompressUtil {
      * @param targetPath 压缩文件保存地址
      */
     public static void compressToZip(File sourceFile, String targetPath) {
+        compressToZip(sourceFile, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 压缩为zip格式，支持文件、文件夹的压缩
+     * 各文件在线程池中并行压缩，最后按顺序连同已知的CRC与大小一起写入zip，无需data descriptor
+     *
+     * @param sourceFile 被压缩文件
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数
+     */
+    public static void compressToZip(File sourceFile, String targetPath, ArchiveOptions options) {
+        try {
+            doCompressToZip(sourceFile, targetPath, options);
+        } catch (ArchiveCancelledException e) {
+            LOGGER.info("compress file to zip cancelled, file name:{}", sourceFile.getName());
+        } catch (IOException e) {
+            LOGGER.error("compress file to zip throw exception:{}", e);
+        }
+    }
+
+    private static void doCompressToZip(File sourceFile, String targetPath, ArchiveOptions options) throws IOException {
         FileUtil.validateTargetPath(targetPath);
         //输入文件路径包含文件名
         File targetFile = new File(String.format("%s%s%s.%s", targetPath, File.separator, sourceFile.getName(), FileTypeEnum.ZIP.getTypeName()));
 
-        //1.使用try-with-resource优雅关闭流
-        //2.使用CRC32进行文件校验
         LOGGER.info("start to compress file to zip, file name:{}", sourceFile.getName());
-        long start = System.currentTimeMillis();
-        try (FileOutputStream fileOut = new FileOutputStream(targetFile);
-             CheckedOutputStream cos = new CheckedOutputStream(fileOut, new CRC32());
-             ZipOutputStream zipOut = new ZipOutputStream(cos)) {
+        ArchiveMetrics.Recording recording = ArchiveMetrics.start(ArchiveMetrics.COMPRESS, FileTypeEnum.ZIP);
+        ProgressTracker tracker = ProgressTracker.of(options, () -> FileUtil.sizeOf(sourceFile));
+        int parallelism = options.getParallelism();
+        //未指定共享线程池时按parallelism创建本次压缩专用的线程池
+        ExecutorService executor = options.getExecutor() != null ? options.getExecutor() : Executors.newFixedThreadPool(parallelism);
+        try (ZipArchiveOutputStream zipOut = new ZipArchiveOutputStream(targetFile);
+             ParallelZipCreator creator = new ParallelZipCreator(zipOut, executor, parallelism, options, tracker)) {
             String baseDir = "";
-            compressToZip(sourceFile, zipOut, baseDir);
-        } catch (FileNotFoundException e) {
-            LOGGER.error("compress file to zip throw exception:{}", e);
-        } catch (IOException e) {
-            LOGGER.error("compress file to zip throw exception:{}", e);
+            compressToZip(sourceFile, creator, baseDir, recording);
+            creator.finish();
+        } catch (ArchiveCancelledException e) {
+            recording.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.fail(e);
+            throw e;
+        } finally {
+            if (executor != options.getExecutor()) {
+                executor.shutdownNow();
+            }
+            tracker.discardIfCancelled(targetFile);
+            recording.compressedSize(targetFile.length());
+            LOGGER.info("finish compress file to zip, file name:{}, cost:{} ms", sourceFile.getName(), recording.stop());
         }
-        LOGGER.info("finish compress file to zip, file name:{}, cost:{} ms", sourceFile.getName(), System.currentTimeMillis() - start);
     }
 
     /**
      * 真正文件/文件夹的压缩部分
      *
      * @param sourceFile 待压缩文件
-     * @param zipOut     压缩流
+     * @param creator    并行压缩器
      * @param baseDir
+     * @param recording  指标记录
      */
-    private static void compressToZip(File sourceFile, ZipOutputStream zipOut, String baseDir) throws IOException {
+    private static void compressToZip(File sourceFile, ParallelZipCreator creator, String baseDir,
+                                      ArchiveMetrics.Recording recording) throws IOException {
         //文件夹的压缩
         if (sourceFile.isDirectory()) {
-            compressDirectoryToZip(sourceFile, zipOut, baseDir);
+            compressDirectoryToZip(sourceFile, creator, baseDir, recording);
         } else {
             //文件的压缩
-            compressFileToZip(sourceFile, zipOut, baseDir);
+            compressFileToZip(sourceFile, creator, baseDir, recording);
         }
     }
 
@@ -84,37 +133,35 @@ public class CompressUtil {
      * 文件夹的压缩
      *
      * @param sourceFile 待压缩文件
-     * @param zipOut     压缩流
+     * @param creator    并行压缩器
      * @param basePath   基本路径
+     * @param recording  指标记录
      */
-    private static void compressDirectoryToZip(File sourceFile, ZipOutputStream zipOut, String basePath) throws IOException {
+    private static void compressDirectoryToZip(File sourceFile, ParallelZipCreator creator, String basePath,
+                                               ArchiveMetrics.Recording recording) throws IOException {
         File[] files = sourceFile.listFiles();
         for (File file : files) {
-            compressToZip(file, zipOut, basePath + sourceFile.getName() + File.separator);
+            compressToZip(file, creator, basePath + sourceFile.getName() + File.separator, recording);
         }
     }
 
     /**
-     * 文件的压缩
+     * 文件的压缩，提交到并行压缩器，由线程池读取并压缩
+     * 压缩方式在工作线程中决定，不可压缩的文件（已压缩格式或试压缩收益不足）以STORED方式存储
      *
      * @param sourceFile 待压缩文件
-     * @param zipOut     压缩流
+     * @param creator    并行压缩器
      * @param basePath   基本路径
+     * @param recording  指标记录
      */
-    private static void compressFileToZip(File sourceFile, ZipOutputStream zipOut, String basePath) throws IOException {
+    private static void compressFileToZip(File sourceFile, ParallelZipCreator creator, String basePath,
+                                          ArchiveMetrics.Recording recording) throws IOException {
         if (!sourceFile.exists()) {
             return;
         }
 
-        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(sourceFile))) {
-            ZipEntry entry = new ZipEntry(basePath + sourceFile.getName());
-            zipOut.putNextEntry(entry);
-            int count;
-            byte data[] = new byte[BUFFER];
-            while ((count = bis.read(data, 0, BUFFER)) != -1) {
-                zipOut.write(data, 0, count);
-            }
-        }
+        creator.addFile(basePath + sourceFile.getName(), sourceFile);
+        recording.entry(sourceFile.length());
     }
 
     /**
@@ -123,26 +170,230 @@ public class CompressUtil {
     private static void compressRar() {
     }
 
+    /**
+     * 按格式压缩，与compressToZip、compressToTarGz等方法相同，但异常直接抛出给调用方而不是只记录日志，
+     * 供需要感知失败的调用方使用（如ArchiveJobService）
+     *
+     * @param type       压缩格式，gz、zst、lz4只支持单个文件
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数
+     */
+    public static void compress(FileTypeEnum type, String sourcePath, String targetPath, ArchiveOptions options) throws IOException {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        switch (type) {
+            case ZIP:
+                doCompressToZip(sourceFile, targetPath, options);
+                break;
+            case TAR:
+                doCompressToTar(sourceFile, targetPath, options);
+                break;
+            case GZ:
+            case ZST:
+            case LZ4:
+                doCompressToCompressedFile(sourceFile, targetPath, type, options);
+                break;
+            case TARGZ:
+            case TARZST:
+            case TARLZ4:
+            case TARXZ:
+            case TARBZ2:
+                doCompressToCompressedTar(sourceFile, targetPath, type, options);
+                break;
+            default:
+                throw new CustomException("unsupported archive type: " + type.getTypeName());
+        }
+    }
+
     /**
      * 压缩为tar.gz格式
+     * tar流直接写入并行gzip流，一次遍历直接生成tar.gz文件，不再产生中间tar文件
      *
-     * @param sourcePath
-     * @param targetPath
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
      */
     public static void compressToTarGz(String sourcePath, String targetPath) {
-        File sourceFile = new File(sourcePath);
-        LOGGER.info("start to compress file to tar.gz, file name:{}", sourceFile.getName());
-        long start = System.currentTimeMillis();
-        //1.压缩为tar
-        String rarSourcePath = compressToTar(sourcePath, targetPath);
-        //2.压缩为gz
-        compressTarToGz(rarSourcePath, targetPath);
-        //3.删除tar
-        if (!FileUtil.deleteFile(rarSourcePath)) {
-            LOGGER.error("delete rar file field, rar file path:{}", rarSourcePath);
+        compressToTarGz(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 压缩为tar.gz格式
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数
+     */
+    public static void compressToTarGz(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        compressToTarGz(sourceFile, targetPath, options);
+    }
+
+    /**
+     * 压缩为tar.gz格式
+     *
+     * @param sourceFile 待压缩文件
+     * @param targetPath 压缩文件保存地址
+     */
+    public static void compressToTarGz(File sourceFile, String targetPath) {
+        compressToTarGz(sourceFile, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 压缩为tar.gz格式
+     *
+     * @param sourceFile 待压缩文件
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数
+     */
+    public static void compressToTarGz(File sourceFile, String targetPath, ArchiveOptions options) {
+        compressToCompressedTar(sourceFile, targetPath, FileTypeEnum.TARGZ, options);
+    }
+
+    /**
+     * 压缩为tar.zst格式，支持zstd多线程压缩
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     */
+    public static void compressToTarZst(String sourcePath, String targetPath) {
+        compressToTarZst(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 压缩为tar.zst格式，支持zstd多线程压缩
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数，zstdLevel与zstdWorkers生效
+     */
+    public static void compressToTarZst(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        compressToTarZst(sourceFile, targetPath, options);
+    }
+
+    public static void compressToTarZst(File sourceFile, String targetPath, ArchiveOptions options) {
+        compressToCompressedTar(sourceFile, targetPath, FileTypeEnum.TARZST, options);
+    }
+
+    /**
+     * 压缩为tar.lz4格式
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     */
+    public static void compressToTarLz4(String sourcePath, String targetPath) {
+        compressToTarLz4(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 压缩为tar.lz4格式
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数
+     */
+    public static void compressToTarLz4(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        compressToTarLz4(sourceFile, targetPath, options);
+    }
+
+    public static void compressToTarLz4(File sourceFile, String targetPath, ArchiveOptions options) {
+        compressToCompressedTar(sourceFile, targetPath, FileTypeEnum.TARLZ4, options);
+    }
+
+    /**
+     * 压缩为tar.xz格式，分块并行压缩，适合追求压缩率的归档
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     */
+    public static void compressToTarXz(String sourcePath, String targetPath) {
+        compressToTarXz(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 压缩为tar.xz格式，分块并行压缩，适合追求压缩率的归档
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数，xzPreset与xzWorkers生效
+     */
+    public static void compressToTarXz(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        compressToTarXz(sourceFile, targetPath, options);
+    }
+
+    public static void compressToTarXz(File sourceFile, String targetPath, ArchiveOptions options) {
+        compressToCompressedTar(sourceFile, targetPath, FileTypeEnum.TARXZ, options);
+    }
+
+    /**
+     * 压缩为tar.bz2格式，按bzip2块大小分块并行压缩
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     */
+    public static void compressToTarBz2(String sourcePath, String targetPath) {
+        compressToTarBz2(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 压缩为tar.bz2格式，按bzip2块大小分块并行压缩
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数，bzip2BlockSize与bzip2Workers生效
+     */
+    public static void compressToTarBz2(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        compressToTarBz2(sourceFile, targetPath, options);
+    }
+
+    public static void compressToTarBz2(File sourceFile, String targetPath, ArchiveOptions options) {
+        compressToCompressedTar(sourceFile, targetPath, FileTypeEnum.TARBZ2, options);
+    }
+
+    /**
+     * tar流直接写入压缩流，一次遍历生成tar.gz、tar.zst、tar.lz4、tar.xz、tar.bz2等文件
+     *
+     * @param sourceFile 待压缩文件
+     * @param targetPath 压缩文件保存地址
+     * @param type       压缩格式
+     * @param options    压缩参数
+     */
+    private static void compressToCompressedTar(File sourceFile, String targetPath, FileTypeEnum type, ArchiveOptions options) {
+        try {
+            doCompressToCompressedTar(sourceFile, targetPath, type, options);
+        } catch (ArchiveCancelledException e) {
+            LOGGER.info("compress file to {} cancelled, file name:{}", type.getTypeName(), sourceFile.getName());
+        } catch (IOException e) {
+            LOGGER.error("compress file to {} throw exception:{}", type.getTypeName(), e);
         }
+    }
+
+    private static void doCompressToCompressedTar(File sourceFile, String targetPath, FileTypeEnum type,
+                                                  ArchiveOptions options) throws IOException {
+        //校验压缩路径是否存在
+        FileUtil.validateTargetPath(targetPath);
 
-        LOGGER.info("finish compress file to tar.gz, file name:{}, cost:{} ms", sourceFile.getName(), System.currentTimeMillis() - start);
+        File targetFile = new File(targetPath, String.format("%s.%s", sourceFile.getName(), type.getTypeName()));
+        LOGGER.info("start to compress file to {}, file name:{}", type.getTypeName(), sourceFile.getName());
+        ArchiveMetrics.Recording recording = ArchiveMetrics.start(ArchiveMetrics.COMPRESS, type);
+        ProgressTracker tracker = ProgressTracker.of(options, () -> FileUtil.sizeOf(sourceFile));
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(CompressorStreams.compress(type,
+                IoStreams.createFile(targetFile, options), options))) {
+            compressToTar(sourceFile, tos, options, recording, tracker);
+        } catch (ArchiveCancelledException e) {
+            recording.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.fail(e);
+            throw e;
+        } finally {
+            tracker.discardIfCancelled(targetFile);
+            recording.compressedSize(targetFile.length());
+            LOGGER.info("finish compress file to {}, file name:{}, cost:{} ms", type.getTypeName(), sourceFile.getName(), recording.stop());
+        }
     }
 
     /**
@@ -152,8 +403,19 @@ public class CompressUtil {
      * @param targetPath 压缩文件保存地址
      */
     public static void compressTarToGz(String sourcePath, String targetPath) {
+        compressTarToGz(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 压缩格式为gz
+     *
+     * @param sourcePath tar文件路径
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数
+     */
+    public static void compressTarToGz(String sourcePath, String targetPath, ArchiveOptions options) {
         File sourceFile = FileUtil.validateSourcePath(sourcePath);
-        compressTarToGz(sourceFile, targetPath);
+        compressTarToGz(sourceFile, targetPath, options);
     }
 
     /**
@@ -163,26 +425,121 @@ public class CompressUtil {
      * @param targetPath 压缩文件保存地址
      */
     public static void compressTarToGz(File sourceFile, String targetPath) {
+        compressTarToGz(sourceFile, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 压缩格式为gz，使用ParallelGzipOutputStream多线程分块压缩
+     *
+     * @param sourceFile tar文件路径
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数
+     */
+    public static void compressTarToGz(File sourceFile, String targetPath, ArchiveOptions options) {
+        compressToCompressedFile(sourceFile, targetPath, FileTypeEnum.GZ, options);
+    }
+
+    /**
+     * 单个文件压缩为zst格式
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     */
+    public static void compressToZst(String sourcePath, String targetPath) {
+        compressToZst(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 单个文件压缩为zst格式
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数，zstdLevel与zstdWorkers生效
+     */
+    public static void compressToZst(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        compressToZst(sourceFile, targetPath, options);
+    }
+
+    public static void compressToZst(File sourceFile, String targetPath, ArchiveOptions options) {
+        compressToCompressedFile(sourceFile, targetPath, FileTypeEnum.ZST, options);
+    }
+
+    /**
+     * 单个文件压缩为lz4格式
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     */
+    public static void compressToLz4(String sourcePath, String targetPath) {
+        compressToLz4(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 单个文件压缩为lz4格式
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数
+     */
+    public static void compressToLz4(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        compressToLz4(sourceFile, targetPath, options);
+    }
+
+    public static void compressToLz4(File sourceFile, String targetPath, ArchiveOptions options) {
+        compressToCompressedFile(sourceFile, targetPath, FileTypeEnum.LZ4, options);
+    }
+
+    /**
+     * 单个文件压缩为gz、zst、lz4等格式
+     *
+     * @param sourceFile 待压缩文件
+     * @param targetPath 压缩文件保存地址
+     * @param type       压缩格式
+     * @param options    压缩参数
+     */
+    private static void compressToCompressedFile(File sourceFile, String targetPath, FileTypeEnum type, ArchiveOptions options) {
+        try {
+            doCompressToCompressedFile(sourceFile, targetPath, type, options);
+        } catch (ArchiveCancelledException e) {
+            LOGGER.info("compress file to {} cancelled, file name:{}", type.getTypeName(), sourceFile.getName());
+        } catch (IOException e) {
+            LOGGER.error("compress file to {} throw exception:{}", type.getTypeName(), e);
+        }
+    }
+
+    private static void doCompressToCompressedFile(File sourceFile, String targetPath, FileTypeEnum type,
+                                                   ArchiveOptions options) throws IOException {
         //校验解压路径是否存在
         FileUtil.validateTargetPath(targetPath);
-        LOGGER.info("start to compress tar file to tar.gz, file name:{}", sourceFile.getName());
-        long start = System.currentTimeMillis();
-        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(sourceFile))) {
-            try (GzipCompressorOutputStream gos = new GzipCompressorOutputStream(new BufferedOutputStream(
-                    new FileOutputStream(String.format("%s%s%s.%s",
-                            targetPath, File.separator, sourceFile.getName(), FileTypeEnum.GZ.getTypeName()))))) {
-                byte[] buffer = new byte[BUFFER];
+        LOGGER.info("start to compress file to {}, file name:{}", type.getTypeName(), sourceFile.getName());
+        ArchiveMetrics.Recording recording = ArchiveMetrics.start(ArchiveMetrics.COMPRESS, type);
+        ProgressTracker tracker = ProgressTracker.of(options, sourceFile::length);
+        File targetFile = new File(String.format("%s%s%s.%s", targetPath, File.separator, sourceFile.getName(), type.getTypeName()));
+        try (InputStream fis = IoStreams.openFile(sourceFile, options)) {
+            tracker.entryStarted(sourceFile.getName(), sourceFile.length());
+            try (OutputStream cos = CompressorStreams.compress(type, IoStreams.createFile(targetFile, options), options)) {
+                byte[] buffer = options.allocateBuffer();
                 int read;
-                while ((read = bis.read(buffer)) != -1) {
-                    gos.write(buffer, 0, read);
+                while ((read = fis.read(buffer)) != -1) {
+                    tracker.add(read);
+                    cos.write(buffer, 0, read);
                 }
             }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+            tracker.entryFinished(sourceFile.getName(), sourceFile.length());
+            recording.entry(sourceFile.length());
+        } catch (ArchiveCancelledException e) {
+            recording.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.fail(e);
+            throw e;
+        } finally {
+            tracker.discardIfCancelled(targetFile);
+            recording.compressedSize(targetFile.length());
+            LOGGER.info("finish compress file to {}, file name:{}, cost:{} ms", type.getTypeName(), sourceFile.getName(), recording.stop());
         }
-        LOGGER.info("finish compress tar file to tar.gz, file name:{}, cost:{} ms", sourceFile.getName(), System.currentTimeMillis() - start);
     }
 
     /**
@@ -193,73 +550,309 @@ public class CompressUtil {
      * @return tar压缩文件路径
      */
     public static String compressToTar(String sourcePath, String targetPath) {
+        return compressToTar(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 压缩为tar格式
+     *
+     * @param sourcePath 待压缩文件路径
+     * @param targetPath 压缩文件保存地址
+     * @param options    压缩参数
+     * @return tar压缩文件路径
+     */
+    public static String compressToTar(String sourcePath, String targetPath, ArchiveOptions options) {
         File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        try {
+            return doCompressToTar(sourceFile, targetPath, options).getAbsolutePath();
+        } catch (ArchiveCancelledException e) {
+            LOGGER.info("compress file to tar cancelled, file name:{}", sourceFile.getName());
+            return tarFileOf(sourceFile, targetPath).getAbsolutePath();
+        } catch (IOException e) {
+            LOGGER.error("compress file to tar throw exception:{}", e);
+            return tarFileOf(sourceFile, targetPath).getAbsolutePath();
+        }
+    }
+
+    private static File doCompressToTar(File sourceFile, String targetPath, ArchiveOptions options) throws IOException {
         //校验解压路径是否存在
         FileUtil.validateTargetPath(targetPath);
 
-        File tarFile = new File(targetPath, String.format("%s.%s", sourceFile.getName(), FileTypeEnum.TAR.getTypeName()));
+        File tarFile = tarFileOf(sourceFile, targetPath);
         LOGGER.info("start compress file to tar, file name:{}, cost:{} ms", sourceFile.getName());
-        long start = System.currentTimeMillis();
-        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(new FileOutputStream(tarFile))) {
-            tos.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);  //解决长路径问题
-            String base = sourceFile.getName();
-            if (sourceFile.isDirectory()) {
-                compressDirectoryToTar(sourceFile, tos, base);
+        ArchiveMetrics.Recording recording = ArchiveMetrics.start(ArchiveMetrics.COMPRESS, FileTypeEnum.TAR);
+        ProgressTracker tracker = ProgressTracker.of(options, () -> FileUtil.sizeOf(sourceFile));
+        try {
+            if (options.isZeroCopy()) {
+                //零拷贝：文件内容由FileChannel.transferTo分段直接写入tar文件，每段之间检查取消
+                try (TarChannelWriter writer = new TarChannelWriter(new FileOutputStream(tarFile).getChannel())) {
+                    compressToTar(sourceFile, (file, basePath) -> {
+                        String entryName = tarEntryName(file, basePath);
+                        tracker.entryStarted(entryName, file.length());
+                        writer.putFile(entryName, file, tracker);
+                        tracker.entryFinished(entryName, file.length());
+                        recording.entry(file.length());
+                    });
+                }
             } else {
-                compressFileToTar(tos, sourceFile, base);
+                try (TarArchiveOutputStream tos = new TarArchiveOutputStream(IoStreams.createFile(tarFile, options))) {
+                    compressToTar(sourceFile, tos, options, recording, tracker);
+                }
             }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+        } catch (ArchiveCancelledException e) {
+            recording.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.fail(e);
+            throw e;
+        } finally {
+            tracker.discardIfCancelled(tarFile);
+            recording.compressedSize(tarFile.length());
+            LOGGER.info("finish compress file to tar, file name:{}, cost:{} ms", sourceFile.getName(), recording.stop());
+        }
+        //返回tar压缩文件
+        return tarFile;
+    }
+
+    private static File tarFileOf(File sourceFile, String targetPath) {
+        return new File(targetPath, String.format("%s.%s", sourceFile.getName(), FileTypeEnum.TAR.getTypeName()));
+    }
+
+    /**
+     * 将文件/文件夹写入tar流，tar与tar.gz共用
+     *
+     * @param sourceFile 待压缩文件
+     * @param tos        tar输出流
+     * @param options    压缩参数
+     * @param recording  指标记录
+     * @param tracker    进度与取消
+     */
+    private static void compressToTar(File sourceFile, TarArchiveOutputStream tos, ArchiveOptions options,
+                                      ArchiveMetrics.Recording recording, ProgressTracker tracker) throws IOException {
+        tos.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);  //解决长路径问题
+        compressToTar(sourceFile, (file, basePath) -> {
+            compressFileToTar(tos, file, basePath, options, tracker);
+            recording.entry(file.length());
+        });
+    }
+
+    /**
+     * 遍历文件/文件夹，每个文件交给writer写入tar
+     *
+     * @param sourceFile 待压缩文件
+     * @param writer     tar条目写入方式
+     */
+    private static void compressToTar(File sourceFile, TarFileWriter writer) throws IOException {
+        String base = sourceFile.getName();
+        if (sourceFile.isDirectory()) {
+            compressDirectoryToTar(sourceFile, writer, base);
+        } else {
+            writer.write(sourceFile, base);
         }
-        LOGGER.info("finish compress file to tar, file name:{}, cost:{} ms", sourceFile.getName(), System.currentTimeMillis() - start);
-        //返回tar压缩文件路径
-        return tarFile.getAbsolutePath();
     }
 
     /**
      * 文件夹压缩为tar包，本质递归文件压缩处理
      *
+     * 源文件无法读取时跳过该文件，写出tar失败（如磁盘已满）时中止整个压缩
+     *
      * @param sourceFile
-     * @param tos
+     * @param writer     tar条目写入方式
      * @param basePath   基本路径
      */
-    private static void compressDirectoryToTar(File sourceFile, TarArchiveOutputStream tos, String basePath) {
+    private static void compressDirectoryToTar(File sourceFile, TarFileWriter writer, String basePath) throws IOException {
         File[] files = sourceFile.listFiles();
         for (File file : files) {
             if (file.isDirectory()) {
-                compressDirectoryToTar(file, tos, String.format("%s%s%s", basePath, File.separator, file.getName()));
+                compressDirectoryToTar(file, writer, String.format("%s%s%s", basePath, File.separator, file.getName()));
             } else {
                 try {
-                    compressFileToTar(tos, file, basePath);
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    writer.write(file, basePath);
+                } catch (SourceReadException e) {
+                    LOGGER.warn("skip unreadable file, file name:{}, e:{}", file.getPath(), e.getMessage());
                 }
             }
         }
     }
 
+    /**
+     * tar条目名称
+     *
+     * @param sourceFile 待压缩文件
+     * @param basePath   基本路径
+     * @return 条目名称
+     */
+    private static String tarEntryName(File sourceFile, String basePath) {
+        return String.format("%s%s%s", basePath, File.separator, sourceFile.getName());
+    }
+
     /**
      * 文件压缩为tar包
      *
      * @param tos
      * @param sourceFile
+     * @param options    压缩参数
+     * @param tracker    进度与取消
      * @throws IOException
      */
-    private static void compressFileToTar(TarArchiveOutputStream tos, File sourceFile, String basePath) throws IOException {
-        TarArchiveEntry tEntry = new TarArchiveEntry(String.format("%s%s%s", basePath, File.separator, sourceFile.getName()));
+    private static void compressFileToTar(TarArchiveOutputStream tos, File sourceFile, String basePath, ArchiveOptions options,
+                                          ProgressTracker tracker) throws IOException {
+        //先打开源文件再写条目头，打不开时tar流中不留下未完成的条目
+        FileInputStream source;
+        try {
+            source = new FileInputStream(sourceFile);
+        } catch (FileNotFoundException e) {
+            throw new SourceReadException("open source file failed: " + sourceFile, e);
+        }
+        TarArchiveEntry tEntry = new TarArchiveEntry(tarEntryName(sourceFile, basePath));
         tEntry.setSize(sourceFile.length());
+        tracker.entryStarted(tEntry.getName(), tEntry.getSize());
         tos.putArchiveEntry(tEntry);
 
-        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(sourceFile))) {
-
-            byte[] buffer = new byte[BUFFER];
+        try (FileInputStream fis = source) {
+            byte[] buffer = options.allocateBuffer();
             int read;
-            while ((read = bis.read(buffer)) != -1) {
+            while ((read = fis.read(buffer)) != -1) {
+                tracker.add(read);
                 tos.write(buffer, 0, read);
             }
         }
         tos.closeArchiveEntry();
+        tracker.entryFinished(tEntry.getName(), tEntry.getSize());
+    }
+
+    /**
+     * 将内存/流中的条目压缩写入输出流，不经过文件系统
+     * 支持zip、tar、tar.gz、tar.zst、tar.lz4、tar.xz、tar.bz2，写完后不关闭输出流，异常直接抛出给调用方
+     *
+     * @param sources 待压缩条目
+     * @param type    压缩格式
+     * @param out     输出流
+     */
+    public static void compressToStream(List<ArchiveSource> sources, FileTypeEnum type, OutputStream out) throws IOException {
+        compressToStream(sources, type, out, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 将内存/流中的条目压缩写入输出流，不经过文件系统
+     *
+     * @param sources 待压缩条目
+     * @param type    压缩格式
+     * @param out     输出流
+     * @param options 压缩参数
+     */
+    public static void compressToStream(List<ArchiveSource> sources, FileTypeEnum type, OutputStream out,
+                                        ArchiveOptions options) throws IOException {
+        LOGGER.info("start to compress entries to {} stream, entry count:{}", type.getTypeName(), sources.size());
+        ArchiveMetrics.Recording recording = ArchiveMetrics.start(ArchiveMetrics.COMPRESS, type);
+        ProgressTracker tracker = ProgressTracker.of(options, () -> sources.stream().mapToLong(ArchiveSource::getSize).sum());
+        CountingOutputStream counter = new CountingOutputStream(IoStreams.closeShield(out));
+        OutputStream target = new BufferedOutputStream(counter, options.getBufferSize());
+        try {
+            switch (type) {
+                case ZIP:
+                    compressToZipStream(sources, target, options, tracker);
+                    break;
+                case TAR:
+                    compressToTarStream(sources, target, options, tracker);
+                    break;
+                case TARGZ:
+                case TARZST:
+                case TARLZ4:
+                case TARXZ:
+                case TARBZ2:
+                    compressToTarStream(sources, CompressorStreams.compress(type, target, options), options, tracker);
+                    break;
+                default:
+                    throw new CustomException("unsupported archive type: " + type.getTypeName());
+            }
+            sources.forEach(source -> recording.entry(source.getSize()));
+        } catch (ArchiveCancelledException e) {
+            recording.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.fail(e);
+            throw e;
+        } finally {
+            recording.compressedSize(counter.getBytesWritten());
+            LOGGER.info("finish compress entries to {} stream, cost:{} ms", type.getTypeName(), recording.stop());
+        }
+    }
+
+    /**
+     * 将内存/流中的条目压缩到内存
+     *
+     * @param sources 待压缩条目
+     * @param type    压缩格式
+     * @param options 压缩参数
+     * @return 压缩结果，直接包装内部数组，无额外拷贝
+     */
+    public static ByteBuffer compressToBuffer(List<ArchiveSource> sources, FileTypeEnum type, ArchiveOptions options) throws IOException {
+        IoStreams.BufferOutputStream bos = new IoStreams.BufferOutputStream(options.getBufferSize());
+        compressToStream(sources, type, bos, options);
+        return bos.toByteBuffer();
+    }
+
+    private static void compressToZipStream(List<ArchiveSource> sources, OutputStream out, ArchiveOptions options,
+                                            ProgressTracker tracker) throws IOException {
+        try (ZipArchiveOutputStream zipOut = new StrategyZipOutputStream(out, options.getCompressLevel(),
+                options.getCompressStrategy())) {
+            for (ArchiveSource source : sources) {
+                ZipArchiveEntry entry = new ZipArchiveEntry(source.getName());
+                entry.setTime(source.getLastModified());
+                entry.setSize(source.getSize());
+                zipOut.putArchiveEntry(entry);
+                copySource(source, zipOut, options, tracker);
+                zipOut.closeArchiveEntry();
+            }
+        }
+    }
+
+    private static void compressToTarStream(List<ArchiveSource> sources, OutputStream out, ArchiveOptions options,
+                                            ProgressTracker tracker) throws IOException {
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(out)) {
+            tos.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);  //解决长路径问题
+            for (ArchiveSource source : sources) {
+                TarArchiveEntry entry = new TarArchiveEntry(source.getName());
+                entry.setSize(source.getSize());
+                entry.setModTime(source.getLastModified());
+                tos.putArchiveEntry(entry);
+                copySource(source, tos, options, tracker);
+                tos.closeArchiveEntry();
+            }
+        }
+    }
+
+    private static void copySource(ArchiveSource source, OutputStream out, ArchiveOptions options,
+                                   ProgressTracker tracker) throws IOException {
+        tracker.entryStarted(source.getName(), source.getSize());
+        try (InputStream in = source.open()) {
+            byte[] buffer = options.allocateBuffer();
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                tracker.add(read);
+                out.write(buffer, 0, read);
+            }
+        }
+        tracker.entryFinished(source.getName(), source.getSize());
+    }
+
+    /**
+     * 按压缩级别与压缩策略压缩条目的zip输出流，与ParallelZipCreator中的Deflater设置一致
+     * ZipArchiveOutputStream只提供setLevel，压缩策略通过其Deflater设置，每个条目reset后策略保持不变
+     */
+    private static class StrategyZipOutputStream extends ZipArchiveOutputStream {
+        private StrategyZipOutputStream(OutputStream out, int level, int strategy) {
+            super(out);
+            setLevel(level);
+            def.setStrategy(strategy);
+        }
+    }
+
+    /**
+     * tar条目写入方式，流式写入与零拷贝写入共用同一套遍历逻辑
+     */
+    private interface TarFileWriter {
+        void write(File sourceFile, String basePath) throws IOException;
     }
 }
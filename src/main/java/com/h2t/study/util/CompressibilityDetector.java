@@ -0,0 +1,87 @@
+package com.h2t.study.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * 可压缩性判断
+ * 先按扩展名判断常见的已压缩格式，否则读取文件首块做一次最快级别的试压缩，压缩率不足则视为不可压缩
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/19 11:05
+ */
+public class CompressibilityDetector {
+    /**
+     * 试压缩的采样大小
+     */
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    /**
+     * 试压缩后大小超过采样大小的该比例时不再压缩
+     */
+    private static final double STORE_RATIO = 0.9;
+    /**
+     * 本身已压缩的格式
+     */
+    private static final Set<String> INCOMPRESSIBLE_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "jpg", "jpeg", "png", "gif", "webp", "heic",
+            "mp3", "mp4", "m4a", "m4v", "aac", "ogg", "mkv", "avi", "mov", "webm",
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst", "lz4", "jar", "war",
+            "docx", "xlsx", "pptx"));
+
+    private CompressibilityDetector() {
+    }
+
+    /**
+     * 判断文件是否不值得压缩
+     *
+     * @param file 待压缩文件
+     * @return true：应以STORED方式存储
+     */
+    public static boolean isIncompressible(File file) throws IOException {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0 && INCOMPRESSIBLE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+            return true;
+        }
+
+        byte[] sample = new byte[(int) Math.min(SAMPLE_SIZE, file.length())];
+        int length = 0;
+        try (FileInputStream fis = new FileInputStream(file)) {
+            int read;
+            while (length < sample.length && (read = fis.read(sample, length, sample.length - length)) != -1) {
+                length += read;
+            }
+        }
+        if (length == 0) {
+            return false;
+        }
+        return trialDeflate(sample, length) > length * STORE_RATIO;
+    }
+
+    /**
+     * 以最快级别压缩采样数据
+     *
+     * @return 压缩后大小
+     */
+    private static long trialDeflate(byte[] sample, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+            byte[] out = new byte[8192];
+            while (!deflater.finished()) {
+                deflater.deflate(out);
+            }
+            return deflater.getBytesWritten();
+        } finally {
+            deflater.end();
+        }
+    }
+}
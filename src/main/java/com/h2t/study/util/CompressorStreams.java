@@ -0,0 +1,112 @@
+package com.h2t.study.util;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.h2t.study.enums.FileTypeEnum;
+import com.h2t.study.exception.CustomException;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZInputStream;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.*;
+
+/**
+ * 按压缩格式创建压缩/解压流，tar及单文件的各种压缩格式共用
+ * zstd使用zstd-jni（支持多线程压缩），lz4使用lz4-java的frame格式（commons-compress自带的纯Java实现过慢），
+ * xz使用xz-java，bzip2使用commons-compress，多线程时均分块并行压缩、解压
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/23 10:20
+ */
+public class CompressorStreams {
+    private CompressorStreams() {
+    }
+
+    /**
+     * 创建压缩输出流
+     *
+     * @param type    压缩格式
+     * @param out     输出流
+     * @param options 压缩参数
+     * @return 压缩输出流
+     */
+    public static OutputStream compress(FileTypeEnum type, OutputStream out, ArchiveOptions options) throws IOException {
+        switch (type) {
+            case TARGZ:
+            case GZ:
+                return new ParallelGzipOutputStream(out, options);
+            case TARZST:
+            case ZST:
+                ZstdOutputStream zos = new ZstdOutputStream(out, options.getZstdLevel());
+                if (options.getZstdWorkers() > 1) {
+                    zos.setWorkers(options.getZstdWorkers());
+                }
+                return zos;
+            case TARLZ4:
+            case LZ4:
+                return new LZ4FrameOutputStream(out);
+            case TARXZ:
+                return options.getXzWorkers() > 1 ? new ParallelXzOutputStream(out, options)
+                        : new XZOutputStream(out, new LZMA2Options(options.getXzPreset()));
+            case TARBZ2:
+                return options.getBzip2Workers() > 1 ? new ParallelBzip2OutputStream(out, options)
+                        : new BZip2CompressorOutputStream(out, options.getBzip2BlockSize());
+            default:
+                throw new CustomException("unsupported compress type: " + type.getTypeName());
+        }
+    }
+
+    /**
+     * 创建解压输入流
+     *
+     * @param type 压缩格式
+     * @param in   输入流
+     * @return 解压输入流
+     */
+    public static InputStream decompress(FileTypeEnum type, InputStream in) throws IOException {
+        switch (type) {
+            case TARGZ:
+            case GZ:
+                return new GzipCompressorInputStream(in, true);
+            case TARZST:
+            case ZST:
+                return new ZstdInputStream(in);
+            case TARLZ4:
+            case LZ4:
+                return new LZ4FrameInputStream(in);
+            case TARXZ:
+                return new XZInputStream(in);
+            case TARBZ2:
+                return new BZip2CompressorInputStream(in, true);
+            default:
+                throw new CustomException("unsupported compress type: " + type.getTypeName());
+        }
+    }
+
+    /**
+     * 创建文件的解压输入流，xz、bzip2按块并行解压，多member的gzip按member并行解压，其余格式同decompress(type, in)
+     *
+     * @param type    压缩格式
+     * @param file    压缩文件
+     * @param options 解压参数
+     * @return 解压输入流
+     */
+    public static InputStream decompress(FileTypeEnum type, File file, ArchiveOptions options) throws IOException {
+        if (type == FileTypeEnum.TARGZ || type == FileTypeEnum.GZ) {
+            return new ParallelGzipInputStream(file, options);
+        }
+        if (type == FileTypeEnum.TARXZ) {
+            return new ParallelXzInputStream(file, options);
+        }
+        if (type == FileTypeEnum.TARBZ2) {
+            return new ParallelBzip2InputStream(file, options);
+        }
+        return decompress(type, IoStreams.openFile(file, options));
+    }
+}
@@ -0,0 +1,81 @@
+package com.h2t.study.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * 解压条目过滤器，按条目名称（以/分隔的相对路径）选择要解压的条目
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/30 10:00
+ */
+public class EntryFilters {
+    /**
+     * 解压全部条目
+     */
+    public static final Predicate<String> ALL = name -> true;
+
+    private EntryFilters() {
+    }
+
+    /**
+     * 匹配任意一个glob的条目
+     * *匹配除/以外的任意字符，**匹配包括/在内的任意字符（**&#47;可匹配零层目录），?匹配除/以外的单个字符
+     *
+     * @param globs glob列表，如config/*.yml、**&#47;application.properties
+     * @return 过滤器
+     */
+    public static Predicate<String> glob(String... globs) {
+        List<Pattern> patterns = new ArrayList<>(globs.length);
+        for (String glob : globs) {
+            patterns.add(Pattern.compile(toRegex(glob)));
+        }
+        return name -> {
+            String normalized = normalize(name);
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(normalized).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * 统一为/分隔，并去掉目录条目末尾的/
+     */
+    private static String normalize(String name) {
+        String normalized = name.replace('\\', '/');
+        return normalized.endsWith("/") ? normalized.substring(0, normalized.length() - 1) : normalized;
+    }
+
+    private static String toRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                if (i + 2 < glob.length() && glob.charAt(i + 2) == '/') {
+                    regex.append("(?:.*/)?");
+                    i += 3;
+                } else {
+                    regex.append(".*");
+                    i += 2;
+                }
+                continue;
+            }
+            if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+            i++;
+        }
+        return regex.toString();
+    }
+}
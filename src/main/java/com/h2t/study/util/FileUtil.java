@@ -72,4 +72,24 @@ public class FileUtil {
 
         return targetFile;
     }
+
+    /**
+     * 文件或文件夹内全部文件的总大小
+     *
+     * @param file 文件或文件夹
+     * @return 字节数
+     */
+    public static long sizeOf(File file) {
+        if (!file.isDirectory()) {
+            return file.length();
+        }
+        long size = 0;
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                size += sizeOf(child);
+            }
+        }
+        return size;
+    }
 }
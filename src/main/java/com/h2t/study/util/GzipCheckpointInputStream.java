@@ -0,0 +1,440 @@
+package com.h2t.study.util;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 可从检查点开始解压的gzip输入流，GzipIndex建立索引与随机读取共用
+ * java.util.zip.Inflater只能从字节对齐且无残余bit的位置开始解压，检查点因此取在member开头，
+ * 以及SYNC_FLUSH/FULL_FLUSH写出的空stored块（00 00 FF FF）之后。ParallelGzipOutputStream每128KB、pigz每个分块都会写出该标记；
+ * 标记也可能出现在stored块的原始数据中，候选检查点会用前32KB窗口试解压一段，与实际输出一致才会被采用
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/27 10:30
+ */
+class GzipCheckpointInputStream extends InputStream {
+    /**
+     * deflate窗口大小
+     */
+    static final int WINDOW_SIZE = 32 * 1024;
+    private static final int INPUT_SIZE = 64 * 1024;
+    /**
+     * 校验候选检查点时试解压的输出大小
+     */
+    private static final int VERIFY_SIZE = 4 * 1024;
+    private static final int FLAG_HCRC = 0x02;
+    private static final int FLAG_EXTRA = 0x04;
+    private static final int FLAG_NAME = 0x08;
+    private static final int FLAG_COMMENT = 0x10;
+
+    /**
+     * 检查点回调
+     */
+    interface CheckpointListener {
+        /**
+         * @param compressedOffset   检查点在gzip文件中的位置
+         * @param uncompressedOffset 检查点对应的解压后位置
+         * @param window             检查点之前的解压数据（最多32KB），在member开头时为null
+         */
+        void onCheckpoint(long compressedOffset, long uncompressedOffset, byte[] window) throws IOException;
+    }
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] in = new byte[INPUT_SIZE];
+    /**
+     * in中有效数据长度
+     */
+    private int inLength;
+    /**
+     * in中已交给inflater的数据长度
+     */
+    private int fed;
+    /**
+     * in[0]在文件中的位置
+     */
+    private long inOffset;
+    private long totalOut;
+    /**
+     * 从member开头解压时才能校验trailer
+     */
+    private boolean crcActive;
+    private boolean eof;
+
+    private final long span;
+    private final CheckpointListener listener;
+    private final byte[] window;
+    private int windowPosition;
+    private long nextCheckpointAt;
+    /**
+     * 最后一次交给inflater的数据以00 00 FF FF结尾
+     */
+    private boolean fedToMarker;
+    private long candidateCompressed;
+    private long candidateUncompressed;
+    private byte[] candidateWindow;
+    private byte[] expected;
+    private int matched;
+
+    private GzipCheckpointInputStream(File sourceFile, long compressedOffset, long uncompressedOffset,
+                                      long span, CheckpointListener listener) throws IOException {
+        this.file = new RandomAccessFile(sourceFile, "r");
+        this.channel = file.getChannel();
+        this.inOffset = compressedOffset;
+        this.totalOut = uncompressedOffset;
+        this.span = span;
+        this.listener = listener;
+        this.window = listener == null ? null : new byte[WINDOW_SIZE];
+    }
+
+    /**
+     * 从头解压并每隔span字节记录一个检查点
+     *
+     * @param sourceFile gzip文件
+     * @param span       检查点间隔（解压后字节数）
+     * @param listener   检查点回调
+     */
+    static GzipCheckpointInputStream forIndexing(File sourceFile, long span, CheckpointListener listener) throws IOException {
+        GzipCheckpointInputStream gis = new GzipCheckpointInputStream(sourceFile, 0, 0, span, listener);
+        try {
+            gis.startMember();
+            gis.addCheckpoint(0, 0, null);
+        } catch (IOException e) {
+            gis.close();
+            throw e;
+        }
+        return gis;
+    }
+
+    /**
+     * 从检查点开始解压
+     *
+     * @param sourceFile         gzip文件
+     * @param compressedOffset   检查点在gzip文件中的位置
+     * @param uncompressedOffset 检查点对应的解压后位置
+     * @param window             检查点的窗口，member开头时为null
+     */
+    static GzipCheckpointInputStream fromCheckpoint(File sourceFile, long compressedOffset, long uncompressedOffset,
+                                                    byte[] window) throws IOException {
+        GzipCheckpointInputStream gis = new GzipCheckpointInputStream(sourceFile, compressedOffset, uncompressedOffset, 0, null);
+        try {
+            if (window == null) {
+                gis.startMember();
+            } else {
+                gis.inflater.setDictionary(window);
+            }
+        } catch (IOException e) {
+            gis.close();
+            throw e;
+        }
+        return gis;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (!eof) {
+            int n;
+            try {
+                n = inflater.inflate(b, off, len);
+            } catch (DataFormatException e) {
+                throw new IOException("invalid deflate data near offset " + (inOffset + fed), e);
+            }
+            if (n > 0) {
+                onOutput(b, off, n);
+                return n;
+            }
+            if (inflater.finished()) {
+                endMember();
+            } else if (inflater.needsInput()) {
+                feed();
+            } else if (inflater.needsDictionary()) {
+                throw new IOException("gzip member requires a preset dictionary");
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[INPUT_SIZE];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        file.close();
+    }
+
+    private void onOutput(byte[] b, int off, int n) throws IOException {
+        if (crcActive) {
+            crc.update(b, off, n);
+        }
+        totalOut += n;
+        if (listener == null) {
+            return;
+        }
+        if (expected != null) {
+            verifyCandidate(b, off, n);
+        }
+        //只保留最后32KB
+        int start = off + Math.max(0, n - WINDOW_SIZE);
+        int length = Math.min(n, WINDOW_SIZE);
+        int first = Math.min(length, WINDOW_SIZE - windowPosition);
+        System.arraycopy(b, start, window, windowPosition, first);
+        System.arraycopy(b, start + first, window, 0, length - first);
+        windowPosition = (windowPosition + length) % WINDOW_SIZE;
+    }
+
+    /**
+     * 向inflater补充输入，寻找检查点时在00 00 FF FF标记处截断，以便在标记之后准确定位
+     */
+    private void feed() throws IOException {
+        if (fedToMarker) {
+            fedToMarker = false;
+            onSyncPoint(inOffset + fed);
+        }
+        if (fed == inLength && !fill()) {
+            throw new EOFException("unexpected end of gzip stream");
+        }
+        int end = inLength;
+        if (lookingForCheckpoint()) {
+            int marker = indexOfMarker(fed, inLength);
+            if (marker >= 0) {
+                end = marker + 4;
+                fedToMarker = true;
+            } else if (inLength - fed > 3) {
+                //保留末尾3字节，防止标记跨越两次读取
+                end = inLength - 3;
+            } else if (fill()) {
+                end = inLength;
+                marker = indexOfMarker(fed, inLength);
+                if (marker >= 0) {
+                    end = marker + 4;
+                    fedToMarker = true;
+                }
+            }
+        }
+        inflater.setInput(in, fed, end - fed);
+        fed = end;
+    }
+
+    private boolean lookingForCheckpoint() {
+        return listener != null && expected == null && totalOut >= nextCheckpointAt;
+    }
+
+    /**
+     * 在标记之后的位置用当前窗口试解压一段，作为候选检查点，待实际输出比对一致后采用
+     */
+    private void onSyncPoint(long compressedOffset) throws IOException {
+        if (!lookingForCheckpoint()) {
+            return;
+        }
+        byte[] dictionary = currentWindow();
+        byte[] input = new byte[INPUT_SIZE];
+        ByteBuffer bb = ByteBuffer.wrap(input);
+        while (bb.hasRemaining() && channel.read(bb, compressedOffset + bb.position()) > 0) {
+            //读满或到达文件末尾
+        }
+        Inflater trial = new Inflater(true);
+        try {
+            if (dictionary.length > 0) {
+                trial.setDictionary(dictionary);
+            }
+            trial.setInput(input, 0, bb.position());
+            byte[] out = new byte[VERIFY_SIZE];
+            int length = 0;
+            while (length < out.length && !trial.finished() && !trial.needsInput()) {
+                int n = trial.inflate(out, length, out.length - length);
+                if (n == 0 && trial.needsDictionary()) {
+                    return;
+                }
+                length += n;
+            }
+            if (length == 0) {
+                return;
+            }
+            candidateCompressed = compressedOffset;
+            candidateUncompressed = totalOut;
+            candidateWindow = dictionary;
+            expected = length == out.length ? out : copyOf(out, length);
+            matched = 0;
+        } catch (DataFormatException e) {
+            //误判的标记
+        } finally {
+            trial.end();
+        }
+    }
+
+    private void verifyCandidate(byte[] b, int off, int n) throws IOException {
+        int length = Math.min(n, expected.length - matched);
+        for (int i = 0; i < length; i++) {
+            if (b[off + i] != expected[matched + i]) {
+                expected = null;
+                candidateWindow = null;
+                return;
+            }
+        }
+        matched += length;
+        if (matched == expected.length) {
+            expected = null;
+            addCheckpoint(candidateCompressed, candidateUncompressed, candidateWindow);
+            candidateWindow = null;
+        }
+    }
+
+    private void addCheckpoint(long compressedOffset, long uncompressedOffset, byte[] checkpointWindow) throws IOException {
+        listener.onCheckpoint(compressedOffset, uncompressedOffset, checkpointWindow);
+        nextCheckpointAt = uncompressedOffset + span;
+    }
+
+    private byte[] currentWindow() {
+        int length = (int) Math.min(WINDOW_SIZE, totalOut);
+        byte[] copy = new byte[length];
+        int start = (windowPosition - length + WINDOW_SIZE) % WINDOW_SIZE;
+        int first = Math.min(length, WINDOW_SIZE - start);
+        System.arraycopy(window, start, copy, 0, first);
+        System.arraycopy(window, 0, copy, first, length - first);
+        return copy;
+    }
+
+    private int indexOfMarker(int from, int to) {
+        for (int i = from; i + 4 <= to; i++) {
+            if (in[i] == 0 && in[i + 1] == 0 && in[i + 2] == (byte) 0xff && in[i + 3] == (byte) 0xff) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * member结束：校验trailer，继续下一个member或结束
+     */
+    private void endMember() throws IOException {
+        fed -= inflater.getRemaining();
+        fedToMarker = false;
+        long crcValue = readInt() & 0xffffffffL;
+        long size = readInt() & 0xffffffffL;
+        if (crcActive && (crcValue != crc.getValue() || size != (inflater.getBytesWritten() & 0xffffffffL))) {
+            throw new IOException("gzip member crc or size mismatch");
+        }
+        if (!hasMoreInput()) {
+            eof = true;
+            return;
+        }
+        if ((in[fed] & 0xff) != 0x1f) {
+            //与GzipCompressorInputStream一致，忽略末尾的非gzip数据
+            eof = true;
+            return;
+        }
+        long memberOffset = inOffset + fed;
+        startMember();
+        if (lookingForCheckpoint()) {
+            expected = null;
+            addCheckpoint(memberOffset, totalOut, null);
+        }
+    }
+
+    /**
+     * 解析member头并重置inflater
+     */
+    private void startMember() throws IOException {
+        if (readByte() != 0x1f || readByte() != 0x8b || readByte() != 8) {
+            throw new IOException("not in gzip format");
+        }
+        int flags = readByte();
+        for (int i = 0; i < 6; i++) {
+            readByte();
+        }
+        if ((flags & FLAG_EXTRA) != 0) {
+            int extraLength = readByte() | (readByte() << 8);
+            for (int i = 0; i < extraLength; i++) {
+                readByte();
+            }
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            while (readByte() != 0) {
+                //跳过文件名
+            }
+        }
+        if ((flags & FLAG_COMMENT) != 0) {
+            while (readByte() != 0) {
+                //跳过注释
+            }
+        }
+        if ((flags & FLAG_HCRC) != 0) {
+            readByte();
+            readByte();
+        }
+        inflater.reset();
+        crc.reset();
+        crcActive = true;
+    }
+
+    private int readInt() throws IOException {
+        return readByte() | (readByte() << 8) | (readByte() << 16) | (readByte() << 24);
+    }
+
+    private int readByte() throws IOException {
+        if (!hasMoreInput()) {
+            throw new EOFException("unexpected end of gzip stream");
+        }
+        return in[fed++] & 0xff;
+    }
+
+    private boolean hasMoreInput() throws IOException {
+        return fed < inLength || fill();
+    }
+
+    /**
+     * 将未交给inflater的数据移到缓冲区开头，并从文件读取更多数据
+     *
+     * @return false：已到文件末尾
+     */
+    private boolean fill() throws IOException {
+        inOffset += fed;
+        System.arraycopy(in, fed, in, 0, inLength - fed);
+        inLength -= fed;
+        fed = 0;
+        int read = channel.read(ByteBuffer.wrap(in, inLength, in.length - inLength), inOffset + inLength);
+        if (read <= 0) {
+            return false;
+        }
+        inLength += read;
+        return true;
+    }
+
+    private static byte[] copyOf(byte[] data, int length) {
+        byte[] copy = new byte[length];
+        System.arraycopy(data, 0, copy, 0, length);
+        return copy;
+    }
+}
@@ -0,0 +1,324 @@
+package com.h2t.study.util;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * tar.gz随机访问索引（zran方式）
+ * 记录每隔span字节的解压检查点（压缩位置、解压位置、前32KB窗口）以及每个tar条目数据在解压流中的位置，
+ * 以旁路文件（源文件名 + .gzidx）保存。解压单个条目时从不超过条目位置的最近检查点开始解压，无需从头解压整个文件。
+ * 检查点只能取在字节对齐的位置（见GzipCheckpointInputStream），
+ * 本工具、pigz、bgzip生成的文件检查点密集；gzip命令生成的单member文件只有起始检查点，仍需从头解压
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/27 14:00
+ */
+public class GzipIndex {
+    /**
+     * 默认检查点间隔：8MB
+     */
+    public static final long DEFAULT_SPAN = 8 * 1024 * 1024;
+    /**
+     * 索引文件后缀
+     */
+    public static final String SUFFIX = ".gzidx";
+    private static final int MAGIC = 0x475a4958;
+    private static final int VERSION = 1;
+    /**
+     * 索引文件头：魔数、版本、源文件大小、源文件修改时间、检查点表位置
+     */
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + 8;
+
+    private final File indexFile;
+    private final long sourceLength;
+    private final long sourceLastModified;
+    private final List<Checkpoint> checkpoints;
+    private final Map<String, Entry> entries;
+
+    private GzipIndex(File indexFile, long sourceLength, long sourceLastModified, List<Checkpoint> checkpoints,
+                      Map<String, Entry> entries) {
+        this.indexFile = indexFile;
+        this.sourceLength = sourceLength;
+        this.sourceLastModified = sourceLastModified;
+        this.checkpoints = checkpoints;
+        this.entries = entries;
+    }
+
+    /**
+     * 源文件对应的索引文件
+     *
+     * @param sourceFile tar.gz文件
+     * @return 索引文件
+     */
+    public static File indexFileOf(File sourceFile) {
+        return new File(sourceFile.getPath() + SUFFIX);
+    }
+
+    /**
+     * 完整解压一遍tar.gz，建立索引并写入索引文件
+     *
+     * @param sourceFile tar.gz文件
+     * @param indexFile  索引文件
+     * @param span       检查点间隔（解压后字节数）
+     * @return 索引
+     */
+    public static GzipIndex build(File sourceFile, File indexFile, long span) throws IOException {
+        if (span <= 0) {
+            throw new IllegalArgumentException("span must be positive");
+        }
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        long sourceLength = sourceFile.length();
+        long sourceLastModified = sourceFile.lastModified();
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+            raf.setLength(0);
+            raf.seek(HEADER_LENGTH);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (TarArchiveInputStream tis = new TarArchiveInputStream(new BufferedInputStream(
+                    GzipCheckpointInputStream.forIndexing(sourceFile, span, (compressedOffset, uncompressedOffset, window) -> {
+                        long windowPosition = -1;
+                        int windowLength = 0;
+                        if (window != null) {
+                            byte[] compressed = deflate(deflater, window);
+                            windowPosition = raf.getFilePointer();
+                            windowLength = compressed.length;
+                            raf.write(compressed);
+                        }
+                        checkpoints.add(new Checkpoint(compressedOffset, uncompressedOffset, windowPosition, windowLength));
+                    }), ArchiveOptions.DEFAULT_BUFFER_SIZE))) {
+                TarArchiveEntry entry;
+                while ((entry = tis.getNextTarEntry()) != null) {
+                    //同名条目以后出现的为准，与完整解压时后写覆盖先写一致
+                    entries.remove(entry.getName());
+                    entries.put(entry.getName(), new Entry(entry.getName(), tis.getBytesRead(), entry.getSize(), entry.isDirectory()));
+                }
+            } finally {
+                deflater.end();
+            }
+
+            long tableOffset = raf.getFilePointer();
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(raf.getChannel())))) {
+                dos.writeInt(checkpoints.size());
+                for (Checkpoint checkpoint : checkpoints) {
+                    dos.writeLong(checkpoint.compressedOffset);
+                    dos.writeLong(checkpoint.uncompressedOffset);
+                    dos.writeLong(checkpoint.windowPosition);
+                    dos.writeInt(checkpoint.windowLength);
+                }
+                dos.writeInt(entries.size());
+                for (Entry entry : entries.values()) {
+                    dos.writeUTF(entry.name);
+                    dos.writeLong(entry.offset);
+                    dos.writeLong(entry.size);
+                    dos.writeBoolean(entry.directory);
+                }
+                dos.flush();
+                raf.seek(0);
+                raf.writeInt(MAGIC);
+                raf.writeInt(VERSION);
+                raf.writeLong(sourceLength);
+                raf.writeLong(sourceLastModified);
+                raf.writeLong(tableOffset);
+            }
+        }
+        return new GzipIndex(indexFile, sourceLength, sourceLastModified, checkpoints, entries);
+    }
+
+    /**
+     * 读取索引文件，窗口数据在使用时才读取
+     *
+     * @param indexFile 索引文件
+     * @return 索引
+     */
+    public static GzipIndex load(File indexFile) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
+            if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                throw new IOException("not a gzip index file: " + indexFile.getName());
+            }
+            long sourceLength = raf.readLong();
+            long sourceLastModified = raf.readLong();
+            raf.seek(raf.readLong());
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(Channels.newInputStream(raf.getChannel())));
+            int checkpointCount = dis.readInt();
+            List<Checkpoint> checkpoints = new ArrayList<>(checkpointCount);
+            for (int i = 0; i < checkpointCount; i++) {
+                checkpoints.add(new Checkpoint(dis.readLong(), dis.readLong(), dis.readLong(), dis.readInt()));
+            }
+            int entryCount = dis.readInt();
+            Map<String, Entry> entries = new LinkedHashMap<>();
+            for (int i = 0; i < entryCount; i++) {
+                Entry entry = new Entry(dis.readUTF(), dis.readLong(), dis.readLong(), dis.readBoolean());
+                entries.put(entry.name, entry);
+            }
+            return new GzipIndex(indexFile, sourceLength, sourceLastModified, checkpoints, entries);
+        }
+    }
+
+    /**
+     * 索引是否与源文件匹配（大小与修改时间一致）
+     *
+     * @param sourceFile tar.gz文件
+     * @return false：源文件已变化，需重建索引
+     */
+    public boolean matches(File sourceFile) {
+        return sourceFile.length() == sourceLength && sourceFile.lastModified() == sourceLastModified;
+    }
+
+    public Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    public int getCheckpointCount() {
+        return checkpoints.size();
+    }
+
+    /**
+     * 打开定位到解压流指定位置的输入流
+     *
+     * @param sourceFile tar.gz文件
+     * @param offset     解压流中的位置
+     * @return 输入流
+     */
+    public InputStream openAt(File sourceFile, long offset) throws IOException {
+        Checkpoint checkpoint = checkpointBefore(offset);
+        InputStream in = GzipCheckpointInputStream.fromCheckpoint(sourceFile, checkpoint.compressedOffset,
+                checkpoint.uncompressedOffset, readWindow(checkpoint));
+        long toSkip = offset - checkpoint.uncompressedOffset;
+        if (in.skip(toSkip) != toSkip) {
+            in.close();
+            throw new EOFException("offset beyond end of gzip stream: " + offset);
+        }
+        return in;
+    }
+
+    /**
+     * 二分查找不超过offset的最后一个检查点
+     */
+    private Checkpoint checkpointBefore(long offset) {
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (checkpoints.get(mid).uncompressedOffset <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return checkpoints.get(low);
+    }
+
+    private byte[] readWindow(Checkpoint checkpoint) throws IOException {
+        if (checkpoint.windowPosition < 0) {
+            return null;
+        }
+        byte[] compressed = new byte[checkpoint.windowLength];
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
+            raf.seek(checkpoint.windowPosition);
+            raf.readFully(compressed);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(GzipCheckpointInputStream.WINDOW_SIZE);
+            byte[] buffer = new byte[GzipCheckpointInputStream.WINDOW_SIZE];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new EOFException("truncated window in gzip index");
+                }
+                bos.write(buffer, 0, n);
+            }
+            return bos.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt window in gzip index", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] data) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 2 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            bos.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * 解压检查点
+     */
+    private static class Checkpoint {
+        private final long compressedOffset;
+        private final long uncompressedOffset;
+        /**
+         * 窗口在索引文件中的位置，member开头的检查点无窗口，为-1
+         */
+        private final long windowPosition;
+        private final int windowLength;
+
+        private Checkpoint(long compressedOffset, long uncompressedOffset, long windowPosition, int windowLength) {
+            this.compressedOffset = compressedOffset;
+            this.uncompressedOffset = uncompressedOffset;
+            this.windowPosition = windowPosition;
+            this.windowLength = windowLength;
+        }
+    }
+
+    /**
+     * tar条目在解压流中的位置
+     */
+    public static class Entry {
+        private final String name;
+        /**
+         * 条目数据在解压流中的起始位置
+         */
+        private final long offset;
+        private final long size;
+        private final boolean directory;
+
+        private Entry(String name, long offset, long size, boolean directory) {
+            this.name = name;
+            this.offset = offset;
+            this.size = size;
+            this.directory = directory;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.h2t.study.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * 流与ByteBuffer之间的适配，以及调用方持有的流的关闭保护
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/31 10:20
+ */
+class IoStreams {
+    private IoStreams() {
+    }
+
+    /**
+     * 读取buffer中position到limit之间内容的输入流，不改变buffer本身的position
+     */
+    static InputStream newInputStream(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        ByteBuffer data = buffer.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return data.hasRemaining() ? data.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!data.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, data.remaining());
+                data.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public long skip(long n) {
+                int skipped = (int) Math.min(Math.max(n, 0), data.remaining());
+                data.position(data.position() + skipped);
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return data.remaining();
+            }
+        };
+    }
+
+    /**
+     * 打开读取的文件，流水线模式下由后台线程预读
+     */
+    static InputStream openFile(File file, ArchiveOptions options) throws IOException {
+        InputStream in = new FileInputStream(file);
+        return options.isPipelined() ? new ReadAheadInputStream(in, options) : new BufferedInputStream(in, options.getBufferSize());
+    }
+
+    /**
+     * 创建写出的文件，流水线模式下由后台线程写出
+     */
+    static OutputStream createFile(File file, ArchiveOptions options) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        return options.isPipelined() ? PipelineWriter.writeBehind(out, options) : new BufferedOutputStream(out, options.getBufferSize());
+    }
+
+    /**
+     * close时只flush，不关闭调用方的输出流
+     */
+    static OutputStream closeShield(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    /**
+     * close时不关闭底层输入流，交给回调的条目数据流被关闭后仍可继续读取下一个条目
+     */
+    static InputStream closeShield(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * 可直接以内部数组构造ByteBuffer的输出缓冲，避免toByteArray拷贝
+     */
+    static class BufferOutputStream extends ByteArrayOutputStream {
+        BufferOutputStream(int size) {
+            super(size);
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
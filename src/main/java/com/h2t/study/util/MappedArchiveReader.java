@@ -0,0 +1,487 @@
+package com.h2t.study.util;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * 基于内存映射的归档读取器，支持tar与zip
+ * 文件按1GB分段映射（突破MappedByteBuffer 2GB限制），tar头、zip中央目录及本地文件头直接从映射中解析，
+ * 每个条目只记录数据在文件中的偏移与长度；各线程通过duplicate()得到独立的视图，互不争用同一个流。
+ * tar中只解压普通文件与目录，符号链接、硬链接、设备文件等条目跳过并记录日志；
+ * zip条目写出时校验CRC（含STORED条目）与解压后的大小
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/18 15:10
+ */
+public class MappedArchiveReader implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedArchiveReader.class);
+    private static final long CHUNK_SIZE = 1L << 30;
+    /**
+     * tar头中类型标志的位置：名称、权限、uid、gid、大小、修改时间、校验和之后
+     */
+    private static final int TAR_TYPE_FLAG_OFFSET = TarConstants.NAMELEN + TarConstants.MODELEN + TarConstants.UIDLEN
+            + TarConstants.GIDLEN + TarConstants.SIZELEN + TarConstants.MODTIMELEN + TarConstants.CHKSUMLEN;
+    private static final String PAX_PATH = "path";
+    private static final String PAX_SIZE = "size";
+
+    private static final int ZIP_LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int ZIP_CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int ZIP_END_SIG = 0x06054b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP_END_LENGTH = 22;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+    private final List<Entry> entries;
+
+    private MappedArchiveReader(File file, boolean zip) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            this.size = channel.size();
+            int chunkCount = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            this.chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long position = i * CHUNK_SIZE;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE, size - position));
+            }
+            this.entries = Collections.unmodifiableList(zip ? readZipEntries() : readTarEntries());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开tar文件
+     *
+     * @param file tar文件
+     * @return 读取器
+     */
+    public static MappedArchiveReader openTar(File file) throws IOException {
+        return new MappedArchiveReader(file, false);
+    }
+
+    /**
+     * 打开zip文件
+     *
+     * @param file zip文件
+     * @return 读取器
+     */
+    public static MappedArchiveReader openZip(File file) throws IOException {
+        return new MappedArchiveReader(file, true);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * 将条目解压到目标文件，可被多个线程并发调用
+     * STORED条目直接把映射区域写入目标FileChannel；DEFLATED条目边inflate边写出；zip条目均校验CRC与大小
+     *
+     * @param entry      条目
+     * @param targetFile 目标文件
+     * @param options    解压参数
+     */
+    public void extract(Entry entry, File targetFile, ArchiveOptions options) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(targetFile)) {
+            if (entry.method == ZipEntry.STORED) {
+                if (entry.compressedSize != entry.size) {
+                    throw new IOException("size mismatch of stored entry, entry:" + entry.name);
+                }
+                FileChannel out = fos.getChannel();
+                CRC32 crc = new CRC32();
+                long position = entry.offset;
+                long remaining = entry.compressedSize;
+                while (remaining > 0) {
+                    ByteBuffer view = view(position, remaining);
+                    int n = view.remaining();
+                    if (entry.crc != -1) {
+                        crc.update(view.duplicate());
+                    }
+                    while (view.hasRemaining()) {
+                        out.write(view);
+                    }
+                    position += n;
+                    remaining -= n;
+                }
+                if (entry.crc != -1 && crc.getValue() != entry.crc) {
+                    throw new IOException("crc mismatch, entry:" + entry.name);
+                }
+            } else {
+                inflate(entry, fos, options);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void inflate(Entry entry, FileOutputStream fos, ArchiveOptions options) throws IOException {
+        Inflater inflater = new Inflater(true);
+        CRC32 crc = new CRC32();
+        byte[] input = new byte[Math.min(options.getBufferSize(), (int) Math.max(1, Math.min(Integer.MAX_VALUE, entry.compressedSize)))];
+        byte[] output = options.allocateBuffer();
+        long position = entry.offset;
+        long remaining = entry.compressedSize;
+        long inflated = 0;
+        try {
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (remaining == 0) {
+                        throw new IOException("unexpected end of deflate data, entry:" + entry.name);
+                    }
+                    int n = (int) Math.min(input.length, remaining);
+                    read(position, input, 0, n);
+                    position += n;
+                    remaining -= n;
+                    inflater.setInput(input, 0, n);
+                }
+                int n = inflater.inflate(output);
+                inflated += n;
+                if (inflated > entry.size) {
+                    throw new IOException("inflated data exceeds entry size " + entry.size + ", entry:" + entry.name);
+                }
+                crc.update(output, 0, n);
+                fos.write(output, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("invalid deflate data, entry:" + entry.name, e);
+        } finally {
+            inflater.end();
+        }
+        if (inflated != entry.size) {
+            throw new IOException("size mismatch, expected " + entry.size + " bytes, got " + inflated + ", entry:" + entry.name);
+        }
+        if (entry.crc != -1 && crc.getValue() != entry.crc) {
+            throw new IOException("crc mismatch, entry:" + entry.name);
+        }
+    }
+
+    /**
+     * tar头逐个解析，支持PAX（path、size）与GNU长文件名，与TarArchiveInputStream一致
+     */
+    private List<Entry> readTarEntries() throws IOException {
+        List<Entry> result = new ArrayList<>();
+        byte[] header = new byte[TarConstants.DEFAULT_RCDSIZE];
+        long position = 0;
+        String longName = null;
+        Map<String, String> pax = Collections.emptyMap();
+        while (position + header.length <= size) {
+            read(position, header, 0, header.length);
+            if (isZero(header)) {
+                break;
+            }
+            TarArchiveEntry tarEntry = new TarArchiveEntry(header);
+            long dataOffset = position + header.length;
+            long entrySize = tarEntry.getSize();
+            //PAX中的size覆盖头部的大小（超过8GB或头部无法表示时）
+            if (pax.containsKey(PAX_SIZE) && !tarEntry.isPaxHeader() && !tarEntry.isGlobalPaxHeader()) {
+                entrySize = parsePaxSize(pax.get(PAX_SIZE));
+            }
+            position = dataOffset + (entrySize + header.length - 1) / header.length * header.length;
+
+            if (tarEntry.isPaxHeader()) {
+                pax = readPaxHeaders(dataOffset, (int) entrySize);
+                continue;
+            }
+            if (tarEntry.isGlobalPaxHeader()) {
+                continue;
+            }
+            if (tarEntry.isGNULongNameEntry()) {
+                longName = readString(dataOffset, (int) entrySize);
+                continue;
+            }
+            if (tarEntry.isGNULongLinkEntry()) {
+                LOGGER.warn("skip gnu long link name entry of mapped tar");
+                continue;
+            }
+            String name = pax.containsKey(PAX_PATH) ? pax.get(PAX_PATH) : longName != null ? longName : tarEntry.getName();
+            longName = null;
+            pax = Collections.emptyMap();
+            if (tarEntry.isDirectory() || tarEntry.isFile()) {
+                result.add(new Entry(name, dataOffset, tarEntry.isDirectory() ? 0 : entrySize,
+                        tarEntry.isDirectory() ? 0 : entrySize, ZipEntry.STORED, -1, tarEntry.isDirectory()));
+            } else {
+                LOGGER.warn("skip unsupported tar entry, entry:{}, type:{}", name, (char) header[TAR_TYPE_FLAG_OFFSET]);
+            }
+        }
+        return result;
+    }
+
+    private static long parsePaxSize(String value) throws IOException {
+        try {
+            long entrySize = Long.parseLong(value);
+            if (entrySize < 0) {
+                throw new IOException("invalid pax size: " + value);
+            }
+            return entrySize;
+        } catch (NumberFormatException e) {
+            throw new IOException("invalid pax size: " + value, e);
+        }
+    }
+
+    /**
+     * 解析PAX扩展头中的记录，格式为"长度 键=值\n"
+     */
+    private Map<String, String> readPaxHeaders(long offset, int length) throws IOException {
+        byte[] data = new byte[length];
+        read(offset, data, 0, length);
+        int start = 0;
+        Map<String, String> headers = new HashMap<>();
+        while (start < length) {
+            int space = start;
+            while (space < length && data[space] != ' ') {
+                space++;
+            }
+            if (space == length) {
+                break;
+            }
+            int recordLength = Integer.parseInt(new String(data, start, space - start, StandardCharsets.US_ASCII));
+            if (recordLength <= 0 || start + recordLength > length) {
+                throw new IOException("invalid pax header");
+            }
+            String record = new String(data, space + 1, start + recordLength - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                headers.put(record.substring(0, equals), record.substring(equals + 1));
+            }
+            start += recordLength;
+        }
+        return headers;
+    }
+
+    private String readString(long offset, int length) throws IOException {
+        byte[] data = new byte[length];
+        read(offset, data, 0, length);
+        int end = 0;
+        while (end < length && data[end] != 0) {
+            end++;
+        }
+        return new String(data, 0, end, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 从中央目录解析zip条目，支持zip64
+     */
+    private List<Entry> readZipEntries() throws IOException {
+        long end = findZipEnd();
+        long entryCount = u16(end + 10);
+        long directorySize = u32(end + 12);
+        long directoryOffset = u32(end + 16);
+        if (entryCount == 0xFFFF || directorySize == ZIP64_MAGIC || directoryOffset == ZIP64_MAGIC) {
+            long locator = end - 20;
+            if (locator < 0 || s32(locator) != ZIP64_LOCATOR_SIG) {
+                throw new IOException("zip64 end of central directory locator not found");
+            }
+            long zip64End = u64(locator + 8);
+            if (s32(zip64End) != ZIP64_END_SIG) {
+                throw new IOException("zip64 end of central directory not found");
+            }
+            entryCount = u64(zip64End + 32);
+            directoryOffset = u64(zip64End + 48);
+        }
+
+        List<Entry> result = new ArrayList<>((int) Math.min(entryCount, Integer.MAX_VALUE));
+        long position = directoryOffset;
+        for (long i = 0; i < entryCount; i++) {
+            if (s32(position) != ZIP_CENTRAL_HEADER_SIG) {
+                throw new IOException("invalid central directory header at " + position);
+            }
+            int flag = u16(position + 8);
+            int method = u16(position + 10);
+            long crc = u32(position + 16);
+            long compressedSize = u32(position + 20);
+            long uncompressedSize = u32(position + 24);
+            int nameLength = u16(position + 28);
+            int extraLength = u16(position + 30);
+            int commentLength = u16(position + 32);
+            long localOffset = u32(position + 42);
+
+            byte[] nameBytes = new byte[nameLength];
+            read(position + 46, nameBytes, 0, nameLength);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            //zip64扩展字段按未压缩大小、压缩大小、本地头偏移的顺序出现
+            long extra = position + 46 + nameLength;
+            long extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = u16(extra);
+                int length = u16(extra + 2);
+                if (id == ZIP64_EXTRA_ID) {
+                    long field = extra + 4;
+                    if (uncompressedSize == ZIP64_MAGIC) {
+                        uncompressedSize = u64(field);
+                        field += 8;
+                    }
+                    if (compressedSize == ZIP64_MAGIC) {
+                        compressedSize = u64(field);
+                        field += 8;
+                    }
+                    if (localOffset == ZIP64_MAGIC) {
+                        localOffset = u64(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+            position = extraEnd + commentLength;
+
+            if ((flag & 1) != 0) {
+                throw new IOException("encrypted entry is not supported, entry:" + name);
+            }
+            if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) {
+                throw new IOException("unsupported compression method " + method + ", entry:" + name);
+            }
+            if (s32(localOffset) != ZIP_LOCAL_HEADER_SIG) {
+                throw new IOException("invalid local file header, entry:" + name);
+            }
+            long dataOffset = localOffset + 30 + u16(localOffset + 26) + u16(localOffset + 28);
+            result.add(new Entry(name, dataOffset, compressedSize, uncompressedSize, method, crc, name.endsWith("/")));
+        }
+        return result;
+    }
+
+    private long findZipEnd() throws IOException {
+        long minimum = Math.max(0, size - ZIP_END_LENGTH - 0xFFFF);
+        for (long position = size - ZIP_END_LENGTH; position >= minimum; position--) {
+            if (s32(position) == ZIP_END_SIG) {
+                return position;
+            }
+        }
+        throw new IOException("end of central directory not found");
+    }
+
+    /**
+     * 返回从position开始、位于同一映射分段内的只读视图
+     */
+    private ByteBuffer view(long position, long length) {
+        int index = (int) (position / CHUNK_SIZE);
+        int offset = (int) (position % CHUNK_SIZE);
+        ByteBuffer view = chunks[index].duplicate();
+        view.position(offset);
+        view.limit((int) Math.min(view.capacity(), offset + length));
+        return view;
+    }
+
+    private void read(long position, byte[] dst, int off, int len) throws IOException {
+        if (position < 0 || position + len > size) {
+            throw new IOException("read beyond end of archive");
+        }
+        while (len > 0) {
+            ByteBuffer view = view(position, len);
+            int n = view.remaining();
+            view.get(dst, off, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private int u16(long position) throws IOException {
+        byte[] b = new byte[2];
+        read(position, b, 0, 2);
+        return (b[0] & 0xff) | (b[1] & 0xff) << 8;
+    }
+
+    private int s32(long position) throws IOException {
+        byte[] b = new byte[4];
+        read(position, b, 0, 4);
+        return (b[0] & 0xff) | (b[1] & 0xff) << 8 | (b[2] & 0xff) << 16 | (b[3] & 0xff) << 24;
+    }
+
+    private long u32(long position) throws IOException {
+        return s32(position) & 0xFFFFFFFFL;
+    }
+
+    private long u64(long position) throws IOException {
+        return u32(position) | u32(position + 4) << 32;
+    }
+
+    private static boolean isZero(byte[] data) {
+        for (byte b : data) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 映射中的条目：名称及数据所在的偏移与长度
+     */
+    public static class Entry {
+        private final String name;
+        private final long offset;
+        private final long compressedSize;
+        private final long size;
+        private final int method;
+        private final long crc;
+        private final boolean directory;
+
+        private Entry(String name, long offset, long compressedSize, long size, int method, long crc, boolean directory) {
+            this.name = name;
+            this.offset = offset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.method = method;
+            this.crc = crc;
+            this.directory = directory;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.h2t.study.util;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 分块并行bzip2解压输入流
+ * 以字节对齐的stream头（"BZh" + 块大小 + 块魔数0x314159265359）切分文件，各stream并行解压。
+ * ParallelBzip2OutputStream及pbzip2生成的文件每块即一个stream，可完全并行；
+ * 普通bzip2生成的单stream文件中block按bit对齐无法切分，退化为顺序解压
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/25 11:00
+ */
+public class ParallelBzip2InputStream extends SegmentParallelInputStream {
+    private static final byte[] BLOCK_MAGIC = {0x31, 0x41, 0x59, 0x26, 0x53, 0x59};
+
+    /**
+     * 按参数中的bzip2线程数解压
+     *
+     * @param sourceFile bzip2文件
+     * @param options    解压参数
+     */
+    public ParallelBzip2InputStream(File sourceFile, ArchiveOptions options) throws IOException {
+        super(sourceFile, options.getBzip2Workers(), options.getExecutor(), options.getBufferSize(), 4 + BLOCK_MAGIC.length, "bzip2");
+    }
+
+    /**
+     * @param sourceFile bzip2文件
+     * @param workers    解压线程数
+     * @param bufferSize 顺序解压时的读缓冲区大小
+     */
+    public ParallelBzip2InputStream(File sourceFile, int workers, int bufferSize) throws IOException {
+        super(sourceFile, workers, null, bufferSize, 4 + BLOCK_MAGIC.length, "bzip2");
+    }
+
+    @Override
+    protected boolean isStreamHeader(byte[] window, int offset) {
+        if (window[offset] != 'B' || window[offset + 1] != 'Z' || window[offset + 2] != 'h'
+                || window[offset + 3] < '1' || window[offset + 3] > '9') {
+            return false;
+        }
+        for (int i = 0; i < BLOCK_MAGIC.length; i++) {
+            if (window[offset + 4 + i] != BLOCK_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected InputStream decompress(InputStream in) throws IOException {
+        return new BZip2CompressorInputStream(in, true);
+    }
+}
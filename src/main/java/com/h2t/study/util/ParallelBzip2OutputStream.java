@@ -0,0 +1,60 @@
+package com.h2t.study.util;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 分块并行bzip2压缩输出流（pbzip2方式）
+ * 输入按bzip2块大小（级别×100KB）分块，每块独立压缩为一个完整的bzip2 stream后按顺序拼接，
+ * bzip2命令与BZip2CompressorInputStream（decompressConcatenated）均可直接解压，配合ParallelBzip2InputStream可并行解压
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/25 10:15
+ */
+public class ParallelBzip2OutputStream extends BlockParallelOutputStream {
+    private final int blockSize;
+
+    /**
+     * 按参数中的bzip2块大小与线程数压缩
+     *
+     * @param out     输出流
+     * @param options 压缩参数
+     */
+    public ParallelBzip2OutputStream(OutputStream out, ArchiveOptions options) {
+        this(out, options.getBzip2BlockSize(), options.getBzip2Workers(), options.getExecutor());
+    }
+
+    /**
+     * @param out       输出流
+     * @param blockSize bzip2块大小，1~9，单位100KB
+     * @param workers   压缩线程数
+     */
+    public ParallelBzip2OutputStream(OutputStream out, int blockSize, int workers) {
+        this(out, blockSize, workers, null);
+    }
+
+    /**
+     * @param out       输出流
+     * @param blockSize bzip2块大小，1~9，单位100KB
+     * @param workers   压缩线程数
+     * @param executor  共享线程池，为null时按需创建
+     */
+    public ParallelBzip2OutputStream(OutputStream out, int blockSize, int workers, ExecutorService executor) {
+        super(out, blockSize * 100000, workers, executor, "bzip2");
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    protected byte[] compressBlock(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(length / 4 + 64);
+        try (BZip2CompressorOutputStream bzip2 = new BZip2CompressorOutputStream(bos, blockSize)) {
+            bzip2.write(data, 0, length);
+        }
+        return bos.toByteArray();
+    }
+}
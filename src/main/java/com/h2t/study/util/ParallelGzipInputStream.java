@@ -0,0 +1,62 @@
+package com.h2t.study.util;
+
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 多member并行gzip解压输入流
+ * bgzip、pigz --independent等工具生成的gzip由多个独立member首尾相接而成，以member头切分后各member并行解压，
+ * CRC与长度由各member的trailer校验，输出与顺序解压逐字节一致。
+ * 单member的gzip（如ParallelGzipOutputStream、gzip命令的输出）中deflate块按bit对齐且依赖前32KB数据，无法切分，不创建线程池直接顺序解压
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/26 10:20
+ */
+public class ParallelGzipInputStream extends SegmentParallelInputStream {
+    /**
+     * gzip头：魔数、压缩方法、标志位、修改时间、XFL、OS
+     */
+    private static final int HEADER_LENGTH = 10;
+    private static final int FLAG_RESERVED = 0xe0;
+    private static final int OS_UNKNOWN = 0xff;
+    private static final int OS_MAX = 13;
+
+    /**
+     * 按参数中的gzip线程数解压
+     *
+     * @param sourceFile gzip文件
+     * @param options    解压参数
+     */
+    public ParallelGzipInputStream(File sourceFile, ArchiveOptions options) throws IOException {
+        super(sourceFile, options.getGzipWorkers(), options.getExecutor(), options.getBufferSize(), HEADER_LENGTH, "gzip");
+    }
+
+    /**
+     * @param sourceFile gzip文件
+     * @param workers    解压线程数
+     * @param bufferSize 顺序解压时的读缓冲区大小
+     */
+    public ParallelGzipInputStream(File sourceFile, int workers, int bufferSize) throws IOException {
+        super(sourceFile, workers, null, bufferSize, HEADER_LENGTH, "gzip");
+    }
+
+    @Override
+    protected boolean isStreamHeader(byte[] window, int offset) {
+        if (window[offset] != 0x1f || (window[offset + 1] & 0xff) != 0x8b || window[offset + 2] != 8
+                || (window[offset + 3] & FLAG_RESERVED) != 0) {
+            return false;
+        }
+        int xfl = window[offset + 8] & 0xff;
+        int os = window[offset + 9] & 0xff;
+        return (xfl == 0 || xfl == 2 || xfl == 4) && (os <= OS_MAX || os == OS_UNKNOWN);
+    }
+
+    @Override
+    protected InputStream decompress(InputStream in) throws IOException {
+        return new GzipCompressorInputStream(in, true);
+    }
+}
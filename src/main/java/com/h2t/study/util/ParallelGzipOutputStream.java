@@ -0,0 +1,246 @@
+package com.h2t.study.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 并行gzip压缩输出流（pigz方式）
+ * 输入按固定大小分块，每块以前一块末尾32KB作为字典在线程池中并行deflate，
+ * 非最后一块以SYNC_FLUSH结束保证字节对齐，按顺序拼接为一个标准的gzip成员，
+ * 可被GzipCompressorInputStream及gunzip正常解压。
+ * 线程数小于等于1时在调用线程逐块压缩；否则出现第二块时才创建线程池（或使用参数中的共享线程池），在途块数不超过线程数+1
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/16 14:20
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+    /**
+     * 默认分块大小
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    /**
+     * deflate字典（滑动窗口）大小
+     */
+    private static final int DICT_SIZE = 32 * 1024;
+    /**
+     * gzip头XFL字段：2表示最大压缩，4表示最快压缩
+     */
+    private static final int XFL_MAX = 2;
+    private static final int XFL_FAST = 4;
+
+    private final OutputStream out;
+    /**
+     * 共享线程池，为null时按需创建本流专用的线程池
+     */
+    private final ExecutorService shared;
+    private final int workers;
+    private final int blockSize;
+    private final int level;
+    private final int strategy;
+    /**
+     * 允许同时在途的压缩块数量，控制内存占用
+     */
+    private final int maxPending;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+
+    private ExecutorService executor;
+    private byte[] block;
+    private int blockLength;
+    private byte[] previousBlock;
+    private int previousLength;
+    private long totalIn;
+    private boolean closed;
+
+    public ParallelGzipOutputStream(OutputStream out) throws IOException {
+        this(out, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 按参数中的gzip线程数、压缩级别与策略压缩
+     *
+     * @param out     输出流
+     * @param options 压缩参数
+     */
+    public ParallelGzipOutputStream(OutputStream out, ArchiveOptions options) throws IOException {
+        this(out, options.getExecutor(), options.getGzipWorkers(), DEFAULT_BLOCK_SIZE, options.getCompressLevel(),
+                options.getCompressStrategy());
+    }
+
+    /**
+     * @param out       输出流
+     * @param executor  共享线程池，为null时按需创建
+     * @param workers   压缩线程数（使用共享线程池时为在途块数），小于等于1时在调用线程压缩
+     * @param blockSize 分块大小
+     * @param level     压缩级别
+     * @param strategy  压缩策略
+     */
+    public ParallelGzipOutputStream(OutputStream out, ExecutorService executor, int workers, int blockSize, int level,
+                                    int strategy) throws IOException {
+        if (blockSize < DICT_SIZE) {
+            throw new IllegalArgumentException("block size must not be less than " + DICT_SIZE);
+        }
+        this.out = out;
+        this.shared = executor;
+        this.workers = Math.max(1, workers);
+        this.blockSize = blockSize;
+        this.level = level;
+        this.strategy = strategy;
+        this.maxPending = this.workers + 1;
+        this.block = new byte[blockSize];
+        writeHeader();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        crc.update(b, off, len);
+        totalIn += len;
+        while (len > 0) {
+            int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            submitBlock(true);
+            while (!pending.isEmpty()) {
+                writeHead();
+            }
+            writeTrailer();
+            out.flush();
+        } finally {
+            if (executor != null && executor != shared) {
+                executor.shutdownNow();
+            } else {
+                pending.forEach(future -> future.cancel(true));
+            }
+            out.close();
+        }
+    }
+
+    /**
+     * 提交当前块进行压缩，在途块过多时先写出最早的块
+     *
+     * @param last 是否最后一块
+     */
+    private void submitBlock(boolean last) throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        final byte[] dict = previousBlock;
+        final int dictLength = previousLength;
+        previousBlock = data;
+        previousLength = length;
+        block = last ? null : new byte[blockSize];
+        blockLength = 0;
+        //单线程或只有一块时在调用线程压缩
+        if (workers <= 1 || (last && executor == null)) {
+            out.write(deflate(data, length, dict, dictLength, last));
+            return;
+        }
+        if (executor == null) {
+            executor = shared != null ? shared : newExecutor(workers);
+        }
+        pending.addLast(executor.submit(() -> deflate(data, length, dict, dictLength, last)));
+        while (pending.size() >= maxPending) {
+            writeHead();
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "parallel-gzip-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private byte[] deflate(byte[] data, int length, byte[] dict, int dictLength, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        deflater.setStrategy(strategy);
+        try {
+            if (dict != null) {
+                int n = Math.min(DICT_SIZE, dictLength);
+                deflater.setDictionary(dict, dictLength - n, n);
+            }
+            deflater.setInput(data, 0, length);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buf = new byte[Math.max(length, 8192)];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    bos.write(buf, 0, deflater.deflate(buf));
+                }
+            } else {
+                //设置了策略时首次deflate只应用参数，需继续调用直到输入耗尽且输出未填满缓冲区
+                int n;
+                do {
+                    n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                    bos.write(buf, 0, n);
+                } while (n == buf.length || !deflater.needsInput());
+            }
+            return bos.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeHead() throws IOException {
+        try {
+            out.write(pending.removeFirst().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("parallel gzip interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("parallel gzip deflate failed", e.getCause());
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        int xfl = level == Deflater.BEST_COMPRESSION ? XFL_MAX : level == Deflater.BEST_SPEED ? XFL_FAST : 0;
+        out.write(new byte[]{0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, (byte) xfl, (byte) 0xff});
+    }
+
+    private void writeTrailer() throws IOException {
+        writeInt((int) crc.getValue());
+        writeInt((int) totalIn);
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+        out.write((value >>> 16) & 0xff);
+        out.write((value >>> 24) & 0xff);
+    }
+}
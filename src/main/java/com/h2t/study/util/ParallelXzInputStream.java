@@ -0,0 +1,219 @@
+package com.h2t.study.util;
+
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 分块并行xz解压输入流
+ * 通过xz文件末尾的index得到每个block的位置与解压后大小，各block在线程池中独立解压，按顺序输出。
+ * ParallelXzOutputStream及xz -T生成的多block文件均可并行解压；只有一个block或block过大时退化为顺序解压。
+ * 在途block解压后的总大小不超过MAX_PENDING_BYTES（至少一个block），大block时在途数减少
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/24 11:10
+ */
+public class ParallelXzInputStream extends InputStream {
+    /**
+     * 并行解压时单个block解压后允许的最大大小，超过时顺序解压
+     */
+    private static final long MAX_PARALLEL_BLOCK_SIZE = 64 * 1024 * 1024;
+    /**
+     * 已提交未取出的block解压后的最大总大小
+     */
+    private static final long MAX_PENDING_BYTES = 128 * 1024 * 1024;
+
+    private final File file;
+    /**
+     * 顺序解压时直接读取；并行解压时只用于读取index
+     */
+    private final SeekableXZInputStream sequential;
+    private final int blockCount;
+    /**
+     * 是否并行解压
+     */
+    private final boolean parallel;
+    private final int threads;
+    /**
+     * 共享线程池，为null时首次读取时创建本流专用的线程池
+     */
+    private final ExecutorService shared;
+    private final int maxPending;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    /**
+     * 每个线程复用一个可seek的xz流，避免每个block重新解析index
+     */
+    private final ThreadLocal<SeekableXZInputStream> workerStream = new ThreadLocal<>();
+    private final Queue<SeekableXZInputStream> openedStreams = new ConcurrentLinkedQueue<>();
+
+    private ExecutorService executor;
+    private int nextBlock;
+    /**
+     * 已提交未取出的block解压后的总大小
+     */
+    private long pendingBytes;
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean closed;
+
+    /**
+     * 按参数中的xz线程数解压
+     *
+     * @param file    xz文件
+     * @param options 解压参数
+     */
+    public ParallelXzInputStream(File file, ArchiveOptions options) throws IOException {
+        this(file, options.getXzWorkers(), options.getExecutor());
+    }
+
+    /**
+     * @param file    xz文件
+     * @param workers 解压线程数
+     */
+    public ParallelXzInputStream(File file, int workers) throws IOException {
+        this(file, workers, null);
+    }
+
+    /**
+     * @param file     xz文件
+     * @param workers  解压线程数（使用共享线程池时为在途block数）
+     * @param executor 共享线程池，为null时按需创建
+     */
+    public ParallelXzInputStream(File file, int workers, ExecutorService executor) throws IOException {
+        this.file = file;
+        this.sequential = new SeekableXZInputStream(new SeekableFileInputStream(file));
+        this.blockCount = sequential.getBlockCount();
+        this.parallel = workers > 1 && blockCount > 1 && maxBlockSize() <= MAX_PARALLEL_BLOCK_SIZE;
+        this.threads = Math.min(workers, blockCount);
+        this.shared = executor;
+        this.maxPending = parallel ? threads + 1 : 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        if (!parallel) {
+            return sequential.read(b, off, len);
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (position == current.length) {
+            if (!nextChunk()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return parallel ? current.length - position : sequential.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            if (executor != null && executor != shared) {
+                executor.shutdownNow();
+            }
+            for (SeekableXZInputStream stream : openedStreams) {
+                stream.close();
+            }
+        } finally {
+            sequential.close();
+        }
+    }
+
+    /**
+     * 补充提交待解压的block，并取出下一个按顺序解压完成的block
+     *
+     * @return false：已读完全部block
+     */
+    private boolean nextChunk() throws IOException {
+        if (executor == null) {
+            executor = shared != null ? shared : Executors.newFixedThreadPool(threads);
+        }
+        while (nextBlock < blockCount && pending.size() < maxPending
+                && (pending.isEmpty() || pendingBytes + sequential.getBlockSize(nextBlock) <= MAX_PENDING_BYTES)) {
+            final int blockNumber = nextBlock++;
+            pendingBytes += sequential.getBlockSize(blockNumber);
+            pending.addLast(executor.submit(() -> decompressBlock(blockNumber)));
+        }
+        if (pending.isEmpty()) {
+            return false;
+        }
+        try {
+            current = pending.removeFirst().get();
+            pendingBytes -= current.length;
+            position = 0;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("parallel xz interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("parallel xz decompress failed", cause);
+        }
+    }
+
+    private byte[] decompressBlock(int blockNumber) throws IOException {
+        SeekableXZInputStream xz = workerStream.get();
+        if (xz == null) {
+            xz = new SeekableXZInputStream(new SeekableFileInputStream(file));
+            openedStreams.add(xz);
+            workerStream.set(xz);
+        }
+        xz.seekToBlock(blockNumber);
+        byte[] data = new byte[(int) xz.getBlockSize(blockNumber)];
+        int length = 0;
+        while (length < data.length) {
+            int read = xz.read(data, length, data.length - length);
+            if (read == -1) {
+                throw new EOFException("unexpected end of xz block " + blockNumber);
+            }
+            length += read;
+        }
+        return data;
+    }
+
+    private long maxBlockSize() {
+        long max = 0;
+        for (int i = 0; i < blockCount; i++) {
+            max = Math.max(max, sequential.getBlockSize(i));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,68 @@
+package com.h2t.study.util;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZ;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 分块并行xz压缩输出流
+ * 分块大小默认为LZMA2字典大小的3倍（与xz -T一致），每块独立压缩为一个完整的xz stream。
+ * xz格式允许多个stream首尾相接，xz命令与XZInputStream均可直接解压，配合ParallelXzInputStream可并行解压
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/24 10:30
+ */
+public class ParallelXzOutputStream extends BlockParallelOutputStream {
+    /**
+     * 最小分块大小
+     */
+    private static final int MIN_BLOCK_SIZE = 1024 * 1024;
+
+    private final LZMA2Options lzma2Options;
+
+    /**
+     * 按参数中的xz预设级别与线程数压缩
+     *
+     * @param out     输出流
+     * @param options 压缩参数
+     */
+    public ParallelXzOutputStream(OutputStream out, ArchiveOptions options) throws IOException {
+        this(out, new LZMA2Options(options.getXzPreset()), options.getXzWorkers(), options.getExecutor());
+    }
+
+    /**
+     * @param out          输出流
+     * @param lzma2Options LZMA2参数
+     * @param workers      压缩线程数
+     */
+    public ParallelXzOutputStream(OutputStream out, LZMA2Options lzma2Options, int workers) {
+        this(out, lzma2Options, workers, null);
+    }
+
+    /**
+     * @param out          输出流
+     * @param lzma2Options LZMA2参数
+     * @param workers      压缩线程数
+     * @param executor     共享线程池，为null时按需创建
+     */
+    public ParallelXzOutputStream(OutputStream out, LZMA2Options lzma2Options, int workers, ExecutorService executor) {
+        super(out, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(MIN_BLOCK_SIZE, 3L * lzma2Options.getDictSize())),
+                workers, executor, "xz");
+        this.lzma2Options = lzma2Options;
+    }
+
+    @Override
+    protected byte[] compressBlock(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(length / 4 + 64);
+        try (XZOutputStream xz = new XZOutputStream(bos, lzma2Options, XZ.CHECK_CRC64)) {
+            xz.write(data, 0, length);
+        }
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,311 @@
+package com.h2t.study.util;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * 并行zip写入器
+ * 每个文件在线程池中独立压缩到各自的缓冲（超过阈值溢出到临时文件），同时计算CRC与大小，
+ * 再按提交顺序以raw entry写入zip，local header中即有完整的CRC与大小，无需data descriptor。
+ * 在途条目数有上限，压缩完成的条目会被及时写出，内存与临时文件占用不随文件数增长
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/20 11:00
+ */
+public class ParallelZipCreator implements Closeable {
+    /**
+     * 单个条目压缩结果超过该大小后溢出到临时文件
+     */
+    private static final int MEMORY_THRESHOLD = 4 * 1024 * 1024;
+
+    private final ZipArchiveOutputStream zipOut;
+    private final ExecutorService executor;
+    private final ArchiveOptions options;
+    private final int maxPending;
+    private final ProgressTracker tracker;
+    private final Deque<Future<PreparedEntry>> pending = new ArrayDeque<>();
+
+    /**
+     * @param zipOut      zip输出流
+     * @param executor    压缩线程池
+     * @param parallelism 线程池大小，用于限制在途条目数
+     * @param options     压缩参数
+     */
+    public ParallelZipCreator(ZipArchiveOutputStream zipOut, ExecutorService executor, int parallelism, ArchiveOptions options) {
+        this(zipOut, executor, parallelism, options, ProgressTracker.of(options, () -> ArchiveLister.UNKNOWN));
+    }
+
+    ParallelZipCreator(ZipArchiveOutputStream zipOut, ExecutorService executor, int parallelism, ArchiveOptions options,
+                       ProgressTracker tracker) {
+        this.zipOut = zipOut;
+        this.executor = executor;
+        this.options = options;
+        this.maxPending = Math.max(2, parallelism * 4);
+        this.tracker = tracker;
+    }
+
+    /**
+     * 提交一个文件，在途条目过多时先按顺序写出已提交的条目
+     *
+     * @param entryName  条目名称
+     * @param sourceFile 待压缩文件
+     */
+    public void addFile(String entryName, File sourceFile) throws IOException {
+        tracker.checkCancelled();
+        pending.addLast(executor.submit(() -> prepare(entryName, sourceFile)));
+        while (pending.size() >= maxPending) {
+            writeHead();
+        }
+    }
+
+    /**
+     * 写出全部已提交的条目
+     */
+    public void finish() throws IOException {
+        while (!pending.isEmpty()) {
+            writeHead();
+        }
+    }
+
+    /**
+     * 放弃未写出的条目并清理临时文件
+     */
+    @Override
+    public void close() {
+        while (!pending.isEmpty()) {
+            Future<PreparedEntry> future = pending.removeFirst();
+            if (!future.cancel(true) && future.isDone()) {
+                try {
+                    future.get().release();
+                } catch (Exception ignored) {
+                    //压缩失败的条目无需清理
+                }
+            }
+        }
+    }
+
+    private void writeHead() throws IOException {
+        PreparedEntry prepared;
+        try {
+            prepared = pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("parallel zip interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("parallel zip compress failed", cause);
+        }
+        try (InputStream raw = prepared.openRaw()) {
+            zipOut.addRawArchiveEntry(prepared.entry, raw);
+        } finally {
+            prepared.release();
+        }
+    }
+
+    /**
+     * 在工作线程中压缩单个文件
+     */
+    private PreparedEntry prepare(String entryName, File sourceFile) throws IOException {
+        tracker.entryStarted(entryName, sourceFile.length());
+        PreparedEntry prepared = compress(entryName, sourceFile);
+        tracker.entryFinished(entryName, prepared.entry.getSize());
+        return prepared;
+    }
+
+    private PreparedEntry compress(String entryName, File sourceFile) throws IOException {
+        ZipArchiveEntry entry = new ZipArchiveEntry(entryName);
+        entry.setTime(sourceFile.lastModified());
+        CRC32 crc = new CRC32();
+        byte[] buffer = options.allocateBuffer();
+
+        if (options.isAdaptiveStore() && CompressibilityDetector.isIncompressible(sourceFile)) {
+            //不压缩的条目只计算CRC，写出时再次读取源文件并校验CRC与大小
+            long size = 0;
+            try (FileInputStream fis = new FileInputStream(sourceFile)) {
+                int read;
+                while ((read = fis.read(buffer)) != -1) {
+                    tracker.add(read);
+                    crc.update(buffer, 0, read);
+                    size += read;
+                }
+            }
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc.getValue());
+            return new PreparedEntry(entry, sourceFile, null);
+        }
+
+        Deflater deflater = new Deflater(options.getCompressLevel(), true);
+        deflater.setStrategy(options.getCompressStrategy());
+        SpillBuffer spill = new SpillBuffer();
+        try {
+            try (FileInputStream fis = new FileInputStream(sourceFile);
+                 DeflaterOutputStream dos = new DeflaterOutputStream(spill, deflater, options.getBufferSize())) {
+                int read;
+                while ((read = fis.read(buffer)) != -1) {
+                    tracker.add(read);
+                    crc.update(buffer, 0, read);
+                    dos.write(buffer, 0, read);
+                }
+            }
+            entry.setMethod(ZipEntry.DEFLATED);
+            entry.setSize(deflater.getBytesRead());
+            entry.setCompressedSize(deflater.getBytesWritten());
+            entry.setCrc(crc.getValue());
+            return new PreparedEntry(entry, null, spill);
+        } catch (IOException | RuntimeException e) {
+            spill.release();
+            throw e;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 已计算好CRC与大小、等待写出的条目
+     */
+    private static class PreparedEntry {
+        private final ZipArchiveEntry entry;
+        private final File storedFile;
+        private final SpillBuffer spill;
+
+        private PreparedEntry(ZipArchiveEntry entry, File storedFile, SpillBuffer spill) {
+            this.entry = entry;
+            this.storedFile = storedFile;
+            this.spill = spill;
+        }
+
+        private InputStream openRaw() throws IOException {
+            return spill == null ? new StoredFileInputStream(storedFile, entry) : spill.openInput();
+        }
+
+        private void release() {
+            if (spill != null) {
+                spill.release();
+            }
+        }
+    }
+
+    /**
+     * 读取STORED条目的源文件，同时校验与压缩阶段得到的CRC、大小一致
+     * 源文件在两次读取之间被修改时抛出IOException，避免写出CRC或大小与头部不符的条目
+     */
+    private static class StoredFileInputStream extends FilterInputStream {
+        private final File file;
+        private final long size;
+        private final long expectedCrc;
+        private final CRC32 crc = new CRC32();
+        private long position;
+
+        private StoredFileInputStream(File file, ZipArchiveEntry entry) throws IOException {
+            super(new FileInputStream(file));
+            this.file = file;
+            this.size = entry.getSize();
+            this.expectedCrc = entry.getCrc();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == size) {
+                verify();
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, size - position));
+            if (read == -1) {
+                throw new IOException(String.format("file changed while archiving: %s, expected %d bytes, got %d", file, size, position));
+            }
+            crc.update(b, off, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            throw new IOException("skip is not supported");
+        }
+
+        private void verify() throws IOException {
+            if (in.read() != -1 || crc.getValue() != expectedCrc) {
+                throw new IOException("file changed while archiving: " + file);
+            }
+        }
+    }
+
+    /**
+     * 先写内存，超过阈值后转写临时文件的输出缓冲
+     */
+    private static class SpillBuffer extends OutputStream {
+        private MemoryBuffer memory = new MemoryBuffer();
+        private File spillFile;
+        private OutputStream spillOut;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (spillOut == null && memory.size() + len > MEMORY_THRESHOLD) {
+                spillFile = File.createTempFile("compress-unpack", ".zip.part");
+                spillOut = new BufferedOutputStream(new FileOutputStream(spillFile));
+                memory.writeTo(spillOut);
+                memory = null;
+            }
+            if (spillOut != null) {
+                spillOut.write(b, off, len);
+            } else {
+                memory.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (spillOut != null) {
+                spillOut.close();
+            }
+        }
+
+        private InputStream openInput() throws IOException {
+            return spillFile == null ? memory.toInputStream() : new FileInputStream(spillFile);
+        }
+
+        private void release() {
+            memory = null;
+            if (spillFile != null && !spillFile.delete()) {
+                spillFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * 可直接以内部数组构造输入流，避免toByteArray拷贝
+     */
+    private static class MemoryBuffer extends ByteArrayOutputStream {
+        private InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.h2t.study.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 流水线的写出级
+ * 解压（或压缩）线程把数据写入环形块缓冲区，后台线程按顺序写出到各目标输出流，计算与写盘重叠进行。
+ * 同一时间只能有一个打开的输出流，且只能在一个线程内使用；写入器关闭时等待全部写出，写出失败在之后的写入或关闭时抛出
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/03 11:00
+ */
+public class PipelineWriter implements TargetWriter {
+    /**
+     * 块长度为该值时表示关闭目标输出流
+     */
+    private static final int CLOSE = -1;
+
+    private final BlockRing ring;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Future<?> drain;
+    private Sink current;
+    private boolean closed;
+
+    /**
+     * 按参数中的块数与缓冲区大小写出
+     *
+     * @param options 参数
+     */
+    public PipelineWriter(ArchiveOptions options) {
+        this(options.getPipelineBlocks(), options.getBufferSize());
+    }
+
+    /**
+     * @param blockCount 块数
+     * @param blockSize  块大小
+     */
+    public PipelineWriter(int blockCount, int blockSize) {
+        this.ring = new BlockRing(blockCount, blockSize);
+        this.drain = executor.submit(this::drainLoop);
+    }
+
+    /**
+     * 通过流水线写出到单个输出流，返回的输出流关闭时等待写完并关闭target
+     *
+     * @param target  目标输出流
+     * @param options 参数
+     * @return 输出流
+     */
+    public static OutputStream writeBehind(OutputStream target, ArchiveOptions options) {
+        PipelineWriter writer = new PipelineWriter(options);
+        Sink sink = writer.open(target);
+        sink.owner = true;
+        return sink;
+    }
+
+    @Override
+    public OutputStream open(File file) throws IOException {
+        return open(new FileOutputStream(file));
+    }
+
+    /**
+     * 打开写出到target的输出流，target在写完后由后台线程关闭
+     *
+     * @param target 目标输出流
+     * @return 输出流
+     */
+    public Sink open(OutputStream target) {
+        if (current != null) {
+            throw new IllegalStateException("previous output stream is not closed");
+        }
+        current = new Sink(target);
+        return current;
+    }
+
+    /**
+     * 等待全部写出
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        ring.finish();
+        try {
+            drain.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ring.fail(e);
+            throw new IOException("pipeline writer interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("pipeline write failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Void drainLoop() throws IOException {
+        OutputStream target = null;
+        try {
+            while (ring.take()) {
+                target = (OutputStream) ring.tag();
+                int length = ring.length();
+                if (length == CLOSE) {
+                    target.close();
+                    target = null;
+                } else {
+                    target.write(ring.block(), 0, length);
+                }
+                ring.release();
+            }
+            return null;
+        } catch (IOException | RuntimeException e) {
+            ring.fail(e);
+            if (target != null) {
+                try {
+                    target.close();
+                } catch (IOException ignored) {
+                    //以写出失败的异常为准
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 写入环形缓冲区的输出流
+     */
+    public class Sink extends OutputStream {
+        private final OutputStream target;
+        private byte[] block;
+        private int filled;
+        private boolean sinkClosed;
+        /**
+         * 关闭时是否同时关闭写入器
+         */
+        private boolean owner;
+
+        private Sink(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (sinkClosed) {
+                throw new IOException("stream closed");
+            }
+            while (len > 0) {
+                if (block == null) {
+                    block = ring.claim();
+                    filled = 0;
+                }
+                int n = Math.min(len, block.length - filled);
+                System.arraycopy(b, off, block, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+                if (filled == block.length) {
+                    publish();
+                }
+            }
+        }
+
+        /**
+         * 把未满的块也交给写出线程
+         */
+        @Override
+        public void flush() throws IOException {
+            if (block != null && filled > 0) {
+                publish();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (sinkClosed) {
+                return;
+            }
+            sinkClosed = true;
+            current = null;
+            try {
+                flush();
+                ring.claim();
+                ring.publish(CLOSE, target);
+            } finally {
+                if (owner) {
+                    PipelineWriter.this.close();
+                }
+            }
+        }
+
+        private void publish() throws IOException {
+            ring.publish(filled, target);
+            block = null;
+        }
+    }
+}
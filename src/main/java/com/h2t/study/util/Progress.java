@@ -0,0 +1,79 @@
+package com.h2t.study.util;
+
+/**
+ * 压缩、解压的进度快照
+ * 压缩zip、tar及解压zip时总大小已知；解压tar、rar时按已读取的压缩包字节数估算完成比例；
+ * tar.gz等压缩tar的解压无法预知总大小，完成比例与剩余时间为ArchiveLister.UNKNOWN
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/08 10:30
+ */
+public class Progress {
+    private final long entries;
+    private final long processedBytes;
+    private final long totalBytes;
+    private final double fraction;
+    private final long elapsedMillis;
+
+    Progress(long entries, long processedBytes, long totalBytes, double fraction, long elapsedMillis) {
+        this.entries = entries;
+        this.processedBytes = processedBytes;
+        this.totalBytes = totalBytes;
+        this.fraction = fraction;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * 已完成的文件条目数
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * 已处理的原始数据字节数
+     */
+    public long getProcessedBytes() {
+        return processedBytes;
+    }
+
+    /**
+     * 原始数据总字节数，未知时为ArchiveLister.UNKNOWN
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * 完成比例（0~1），未知时为ArchiveLister.UNKNOWN
+     */
+    public double getFraction() {
+        return fraction;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * 按目前的平均速度估算的剩余时间，未知时为ArchiveLister.UNKNOWN
+     */
+    public long getEstimatedRemainingMillis() {
+        if (fraction <= 0) {
+            return ArchiveLister.UNKNOWN;
+        }
+        return (long) (elapsedMillis * (1 - fraction) / fraction);
+    }
+
+    @Override
+    public String toString() {
+        return "Progress{" +
+                "entries=" + entries +
+                ", processedBytes=" + processedBytes +
+                ", totalBytes=" + totalBytes +
+                ", fraction=" + fraction +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+}
@@ -0,0 +1,42 @@
+package com.h2t.study.util;
+
+/**
+ * 压缩、解压进度监听器，通过ArchiveOptions传入
+ * 回调在执行压缩、解压的线程中同步调用（zip并行压缩时来自线程池，但不会并发调用），应尽快返回
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/08 10:20
+ */
+public interface ProgressListener {
+    /**
+     * 进度回调的最小间隔
+     */
+    long PROGRESS_INTERVAL_MILLIS = 200;
+
+    /**
+     * 开始处理一个文件条目
+     *
+     * @param name 条目名称
+     * @param size 条目原始大小，未知时为ArchiveLister.UNKNOWN
+     */
+    default void entryStarted(String name, long size) {
+    }
+
+    /**
+     * 文件条目处理完成
+     *
+     * @param name 条目名称
+     * @param size 条目原始大小，未知时为ArchiveLister.UNKNOWN
+     */
+    default void entryFinished(String name, long size) {
+    }
+
+    /**
+     * 处理的字节数有变化，两次回调至少间隔PROGRESS_INTERVAL_MILLIS，条目完成时总会回调
+     *
+     * @param progress 当前进度
+     */
+    default void progress(Progress progress) {
+    }
+}
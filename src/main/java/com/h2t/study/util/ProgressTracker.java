@@ -0,0 +1,185 @@
+package com.h2t.study.util;
+
+import com.h2t.study.exception.ArchiveCancelledException;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 一次压缩或解压的进度与取消检查，由ArchiveOptions中的ProgressListener与CancellationToken创建
+ * 两者都未设置时使用不做任何事的实例，拷贝循环中只多一次判断
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/08 11:00
+ */
+class ProgressTracker {
+    private static final ProgressTracker DISABLED = new ProgressTracker(null, null, ArchiveLister.UNKNOWN);
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(ProgressListener.PROGRESS_INTERVAL_MILLIS);
+
+    private final ProgressListener listener;
+    private final CancellationToken token;
+    private final long totalBytes;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong processedBytes = new AtomicLong();
+    private final AtomicLong entries = new AtomicLong();
+    /**
+     * 串行化监听器回调；回调中可能有I/O，用ReentrantLock而不是synchronized，虚拟线程等待时不会占住载体线程
+     */
+    private final ReentrantLock listenerLock = new ReentrantLock();
+    private volatile long lastReportNanos = startNanos;
+    /**
+     * 总大小未知时，按已读取的压缩包字节数估算完成比例
+     */
+    private volatile LongSupplier sourcePosition;
+    private volatile long sourceLength;
+
+    private ProgressTracker(ProgressListener listener, CancellationToken token, long totalBytes) {
+        this.listener = listener;
+        this.token = token;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * @param options    参数
+     * @param totalBytes 原始数据总大小，只在设置了监听器时计算，未知时返回ArchiveLister.UNKNOWN
+     * @return 进度跟踪
+     */
+    static ProgressTracker of(ArchiveOptions options, LongSupplier totalBytes) {
+        ProgressListener listener = options.getProgressListener();
+        CancellationToken token = options.getCancellationToken();
+        if (listener == null && token == null) {
+            return DISABLED;
+        }
+        return new ProgressTracker(listener, token, listener == null ? ArchiveLister.UNKNOWN : totalBytes.getAsLong());
+    }
+
+    /**
+     * 总大小未知时，以压缩包的读取位置估算完成比例
+     *
+     * @param position 已读取的压缩包字节数
+     * @param length   压缩包大小
+     */
+    void trackSource(LongSupplier position, long length) {
+        this.sourcePosition = position;
+        this.sourceLength = length;
+    }
+
+    boolean isCancelled() {
+        return token != null && token.isCancelled();
+    }
+
+    void checkCancelled() throws ArchiveCancelledException {
+        if (isCancelled()) {
+            throw new ArchiveCancelledException("archive operation cancelled");
+        }
+    }
+
+    void entryStarted(String name, long size) throws ArchiveCancelledException {
+        checkCancelled();
+        if (listener != null) {
+            listenerLock.lock();
+            try {
+                listener.entryStarted(name, size);
+            } finally {
+                listenerLock.unlock();
+            }
+        }
+    }
+
+    void entryFinished(String name, long size) {
+        if (listener != null) {
+            entries.incrementAndGet();
+            listenerLock.lock();
+            try {
+                listener.entryFinished(name, size);
+            } finally {
+                listenerLock.unlock();
+            }
+            report(true);
+        }
+    }
+
+    /**
+     * 拷贝循环中每处理一个缓冲区调用一次
+     *
+     * @param bytes 原始数据字节数
+     */
+    void add(long bytes) throws ArchiveCancelledException {
+        checkCancelled();
+        if (listener != null) {
+            processedBytes.addAndGet(bytes);
+            report(false);
+        }
+    }
+
+    /**
+     * 写入时检查取消并累计进度的输出流
+     */
+    OutputStream track(OutputStream out) {
+        if (this == DISABLED) {
+            return out;
+        }
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                add(len);
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * 读取时检查取消并累计进度的输入流
+     */
+    InputStream track(InputStream in) {
+        if (this == DISABLED) {
+            return in;
+        }
+        return new FilterInputStream(in) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    add(read);
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * 已取消时删除未写完的文件
+     */
+    void discardIfCancelled(File file) {
+        if (isCancelled() && file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private void report(boolean force) {
+        long now = System.nanoTime();
+        if (!force && now - lastReportNanos < INTERVAL_NANOS) {
+            return;
+        }
+        lastReportNanos = now;
+        long processed = processedBytes.get();
+        double fraction = ArchiveLister.UNKNOWN;
+        if (totalBytes > 0) {
+            fraction = Math.min(1.0, (double) processed / totalBytes);
+        } else if (sourcePosition != null && sourceLength > 0) {
+            fraction = Math.min(1.0, (double) sourcePosition.getAsLong() / sourceLength);
+        }
+        Progress progress = new Progress(entries.get(), processed, totalBytes, fraction,
+                TimeUnit.NANOSECONDS.toMillis(now - startNanos));
+        listenerLock.lock();
+        try {
+            listener.progress(progress);
+        } finally {
+            listenerLock.unlock();
+        }
+    }
+}
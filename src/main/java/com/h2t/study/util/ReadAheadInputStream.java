@@ -0,0 +1,117 @@
+package com.h2t.study.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 预读输入流，流水线的读取级
+ * 后台线程从源输入流读取数据填入环形块缓冲区，读取方从缓冲区取数据，磁盘读取与解压重叠进行
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/03 10:30
+ */
+public class ReadAheadInputStream extends InputStream {
+    private final InputStream source;
+    private final BlockRing ring;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private boolean holding;
+    private int position;
+    private boolean eof;
+    private boolean closed;
+
+    /**
+     * 按参数中的块数与缓冲区大小预读
+     *
+     * @param source  源输入流，关闭时一并关闭
+     * @param options 参数
+     */
+    public ReadAheadInputStream(InputStream source, ArchiveOptions options) {
+        this(source, options.getPipelineBlocks(), options.getBufferSize());
+    }
+
+    /**
+     * @param source     源输入流，关闭时一并关闭
+     * @param blockCount 预读块数
+     * @param blockSize  块大小
+     */
+    public ReadAheadInputStream(InputStream source, int blockCount, int blockSize) {
+        this.source = source;
+        this.ring = new BlockRing(blockCount, blockSize);
+        executor.execute(this::readLoop);
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                byte[] block = ring.claim();
+                int read = source.read(block, 0, block.length);
+                if (read == -1) {
+                    ring.finish();
+                    return;
+                }
+                ring.publish(read, null);
+            }
+        } catch (IOException | RuntimeException e) {
+            ring.fail(e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!holding && !nextBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, ring.length() - position);
+        System.arraycopy(ring.block(), position, b, off, n);
+        position += n;
+        if (position == ring.length()) {
+            ring.release();
+            holding = false;
+        }
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return holding ? ring.length() - position : 0;
+    }
+
+    private boolean nextBlock() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (!ring.take()) {
+            eof = true;
+            return false;
+        }
+        holding = true;
+        position = 0;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        ring.fail(new IOException("stream closed"));
+        executor.shutdownNow();
+        source.close();
+    }
+}
@@ -0,0 +1,302 @@
+package com.h2t.study.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 分段并行解压输入流
+ * 扫描文件中字节对齐的stream头，将由多个独立stream首尾相接而成的文件（bzip2、多member的gzip）切分成段，
+ * 各段在线程池中并行解压，按顺序输出。切分出第二段时才创建线程池，只有一个stream的文件直接顺序解压；
+ * 遇到超过阈值仍找不到下一个stream头的段时，其后部分退化为顺序解压。
+ * 每段解压后的数据需整段缓存到按顺序输出，单段解压结果超过MAX_DECODED_SIZE时放弃该段，从其起始位置起顺序解压，
+ * 在途数据最多为(workers + 1) * MAX_DECODED_SIZE。
+ * stream头可能在压缩数据中被误判（如未压缩的stored块中包含另一个压缩文件），此时被截断的段解压失败，
+ * 由于该段的起始位置已由前一段解压成功验证，改为从该位置起顺序解压，输出始终与顺序解压一致
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/25 11:00
+ */
+public abstract class SegmentParallelInputStream extends InputStream {
+    /**
+     * 扫描stream边界的初始窗口大小
+     */
+    private static final int INITIAL_WINDOW = 1024 * 1024;
+    /**
+     * 单段压缩数据的最大大小，超过时其后顺序解压
+     */
+    private static final int MAX_SEGMENT_SIZE = 8 * 1024 * 1024;
+    /**
+     * 单段解压后数据的最大大小，超过时该段及其后顺序解压
+     */
+    private static final int MAX_DECODED_SIZE = 32 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long fileLength;
+    private final int headerLength;
+    private final int bufferSize;
+    private final String name;
+    private final int workers;
+    /**
+     * 共享线程池，为null时切分出第二段后创建本流专用的线程池
+     */
+    private final ExecutorService shared;
+    private final int maxPending;
+    private final Deque<Segment> pending = new ArrayDeque<>();
+
+    /**
+     * 下一个待切分的段的起始位置
+     */
+    private long scanPosition;
+    /**
+     * 不为-1时，从该位置起顺序解压
+     */
+    private long sequentialFrom = -1;
+    private ExecutorService executor;
+    private InputStream sequential;
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean closed;
+
+    /**
+     * @param sourceFile   压缩文件
+     * @param workers      解压线程数（使用共享线程池时为在途段数），小于等于1时顺序解压
+     * @param shared       共享线程池，可为null
+     * @param bufferSize   顺序解压时的读缓冲区大小
+     * @param headerLength 判断stream头所需的字节数
+     * @param name         压缩格式名称，用于异常信息
+     */
+    protected SegmentParallelInputStream(File sourceFile, int workers, ExecutorService shared, int bufferSize,
+                                         int headerLength, String name) throws IOException {
+        this.file = new RandomAccessFile(sourceFile, "r");
+        this.channel = file.getChannel();
+        this.fileLength = channel.size();
+        this.headerLength = headerLength;
+        this.bufferSize = bufferSize;
+        this.name = name;
+        this.workers = workers;
+        this.shared = shared;
+        if (workers > 1) {
+            this.maxPending = workers + 1;
+        } else {
+            this.maxPending = 0;
+            this.sequentialFrom = 0;
+        }
+    }
+
+    /**
+     * 判断offset处是否为stream头，offset + headerLength不超过length
+     */
+    protected abstract boolean isStreamHeader(byte[] window, int offset);
+
+    /**
+     * 创建解压流，段解压与顺序解压共用，需支持多个stream首尾相接
+     */
+    protected abstract InputStream decompress(InputStream in) throws IOException;
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            if (position < current.length) {
+                int n = Math.min(len, current.length - position);
+                System.arraycopy(current, position, b, off, n);
+                position += n;
+                return n;
+            }
+            if (sequential != null) {
+                return sequential.read(b, off, len);
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            cancelPending();
+            if (executor != null && executor != shared) {
+                executor.shutdownNow();
+            }
+            if (sequential != null) {
+                sequential.close();
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * 取出下一个按顺序解压完成的段；已切分的段取完后转为顺序解压
+     *
+     * @return false：已读完
+     */
+    private boolean nextChunk() throws IOException {
+        fill();
+        if (!pending.isEmpty()) {
+            Segment segment = pending.removeFirst();
+            try {
+                current = segment.result.get();
+                position = 0;
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("parallel " + name + " interrupted", e);
+            } catch (ExecutionException e) {
+                //可能误判了stream头或该段解压后过大，从该段起顺序解压，真实的数据错误会在顺序解压时抛出
+                cancelPending();
+                sequentialFrom = segment.start;
+            }
+        }
+        if (sequentialFrom >= 0 && sequentialFrom < fileLength) {
+            channel.position(sequentialFrom);
+            sequential = decompress(new BufferedInputStream(Channels.newInputStream(channel), bufferSize));
+            return true;
+        }
+        return false;
+    }
+
+    private void cancelPending() {
+        for (Segment segment : pending) {
+            segment.result.cancel(true);
+        }
+        pending.clear();
+    }
+
+    /**
+     * 补充切分并提交待解压的段
+     */
+    private void fill() throws IOException {
+        while (sequentialFrom < 0 && scanPosition < fileLength && pending.size() < maxPending) {
+            long start = scanPosition;
+            final byte[] data = nextSegment();
+            if (data == null) {
+                sequentialFrom = start;
+                return;
+            }
+            if (executor == null) {
+                //第一段即到文件末尾（如单member的gzip），无法并行，直接顺序解压
+                if (scanPosition >= fileLength) {
+                    sequentialFrom = start;
+                    return;
+                }
+                executor = shared != null ? shared : Executors.newFixedThreadPool(workers);
+            }
+            pending.addLast(new Segment(start, executor.submit(() -> decompressSegment(data))));
+        }
+    }
+
+    /**
+     * 从scanPosition起切分出一段
+     *
+     * @return 段的压缩数据，无法切分时返回null
+     */
+    private byte[] nextSegment() throws IOException {
+        long remaining = fileLength - scanPosition;
+        byte[] window = new byte[(int) Math.min(INITIAL_WINDOW, remaining)];
+        int length = readFully(window, 0, window.length, scanPosition);
+        if (length < headerLength || !isStreamHeader(window, 0)) {
+            return null;
+        }
+        int searchFrom = headerLength;
+        while (true) {
+            int next = findStreamHeader(window, searchFrom, length);
+            if (next > 0) {
+                scanPosition += next;
+                return copyOf(window, next);
+            }
+            if (length == remaining) {
+                scanPosition = fileLength;
+                return copyOf(window, length);
+            }
+            if (length >= MAX_SEGMENT_SIZE) {
+                return null;
+            }
+            //未找到下一个stream头，扩大窗口继续查找，新窗口从可能跨界的位置开始搜索
+            searchFrom = Math.max(headerLength, length - headerLength + 1);
+            byte[] larger = new byte[(int) Math.min((long) window.length * 2, remaining)];
+            System.arraycopy(window, 0, larger, 0, length);
+            window = larger;
+            length += readFully(window, length, window.length - length, scanPosition + length);
+        }
+    }
+
+    private byte[] decompressSegment(byte[] data) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream((int) Math.min((long) data.length * 4, MAX_DECODED_SIZE));
+        try (InputStream in = decompress(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (bos.size() + read > MAX_DECODED_SIZE) {
+                    throw new IOException(name + " segment exceeds " + MAX_DECODED_SIZE + " bytes after decoding");
+                }
+                bos.write(buffer, 0, read);
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private int findStreamHeader(byte[] window, int from, int length) {
+        for (int i = from; i + headerLength <= length; i++) {
+            if (isStreamHeader(window, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int readFully(byte[] buffer, int offset, int length, long filePosition) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(buffer, offset, length);
+        while (bb.hasRemaining()) {
+            if (channel.read(bb, filePosition + bb.position() - offset) == -1) {
+                break;
+            }
+        }
+        return bb.position() - offset;
+    }
+
+    private static byte[] copyOf(byte[] window, int length) {
+        byte[] data = new byte[length];
+        System.arraycopy(window, 0, data, 0, length);
+        return data;
+    }
+
+    /**
+     * 切分出的段的起始位置及其解压结果
+     */
+    private static class Segment {
+        private final long start;
+        private final Future<byte[]> result;
+
+        private Segment(long start, Future<byte[]> result) {
+            this.start = start;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.h2t.study.util;
+
+import com.h2t.study.exception.SourceReadException;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.archivers.zip.ZipEncoding;
+import org.apache.commons.compress.archivers.zip.ZipEncodingHelper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 零拷贝tar写入器
+ * 头部由TarArchiveEntry生成，文件内容通过FileChannel.transferTo直接从源文件写入目标文件，不经过用户态缓冲区
+ * 只适用于未压缩的tar文件，tar.gz仍然使用TarArchiveOutputStream。
+ * 文件内容按TRANSFER_CHUNK_SIZE分段传输，每段之间上报进度并检查取消，大文件不必整个传输完才能中止
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2019/12/18 09:40
+ */
+class TarChannelWriter implements Closeable {
+    private static final int RECORD_SIZE = TarConstants.DEFAULT_RCDSIZE;
+    private static final int BLOCK_SIZE = TarConstants.DEFAULT_BLKSIZE;
+    private static final String PAX_PATH_KEY = "path";
+    /**
+     * 每次transferTo传输的最大字节数
+     */
+    private static final long TRANSFER_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final ZipEncoding encoding = ZipEncodingHelper.getZipEncoding(null);
+    private final byte[] header = new byte[RECORD_SIZE];
+    private long written;
+    private boolean closed;
+
+    TarChannelWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 写入一个文件条目
+     * 源文件打不开时抛出SourceReadException；源文件在写入过程中变短时同样抛出SourceReadException，
+     * 并截掉已写入的部分，tar中不留下该条目；取消时同样截掉已写入的部分
+     *
+     * @param entryName  条目名称
+     * @param sourceFile 源文件
+     * @param tracker    进度与取消，每传输一段调用一次
+     */
+    void putFile(String entryName, File sourceFile, ProgressTracker tracker) throws IOException {
+        FileInputStream source;
+        try {
+            //通过FileInputStream打开，文件名无法按当前编码转换为Path时不会抛出InvalidPathException
+            source = new FileInputStream(sourceFile);
+        } catch (FileNotFoundException e) {
+            throw new SourceReadException("open source file failed: " + sourceFile, e);
+        }
+        try (FileChannel in = source.getChannel()) {
+            long start = written;
+            try {
+                long size = in.size();
+                if (encoding.encode(entryName).limit() >= TarConstants.NAMELEN) {
+                    writePaxPath(entryName);
+                }
+                TarArchiveEntry entry = new TarArchiveEntry(entryName);
+                entry.setSize(size);
+                writeHeader(entry);
+
+                long position = 0;
+                while (position < size) {
+                    long transferred = in.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, size - position), channel);
+                    if (transferred <= 0) {
+                        throw new SourceReadException(String.format("file truncated while archiving: %s, expected %d bytes, got %d",
+                                sourceFile, size, position));
+                    }
+                    position += transferred;
+                    tracker.add(transferred);
+                }
+                written += size;
+                padToRecord();
+            } catch (IOException e) {
+                channel.truncate(start);
+                channel.position(start);
+                written = start;
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            //结尾两个全零记录，并补齐到块大小
+            writeZeros(RECORD_SIZE * 2);
+            long remainder = written % BLOCK_SIZE;
+            if (remainder != 0) {
+                writeZeros((int) (BLOCK_SIZE - remainder));
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * 超长路径写PAX扩展头（与LONGFILE_POSIX一致）
+     *
+     * @param entryName 条目名称
+     */
+    private void writePaxPath(String entryName) throws IOException {
+        int length = PAX_PATH_KEY.length() + entryName.length() + 3 + 2;
+        String line = length + " " + PAX_PATH_KEY + "=" + entryName + "\n";
+        int actualLength = line.getBytes(StandardCharsets.UTF_8).length;
+        while (length != actualLength) {
+            length = actualLength;
+            line = length + " " + PAX_PATH_KEY + "=" + entryName + "\n";
+            actualLength = line.getBytes(StandardCharsets.UTF_8).length;
+        }
+        byte[] data = line.getBytes(StandardCharsets.UTF_8);
+
+        String paxName = "./PaxHeaders.X/" + entryName;
+        if (paxName.length() >= TarConstants.NAMELEN) {
+            paxName = paxName.substring(0, TarConstants.NAMELEN - 1);
+        }
+        TarArchiveEntry paxEntry = new TarArchiveEntry(paxName, TarConstants.LF_PAX_EXTENDED_HEADER_LC);
+        paxEntry.setSize(data.length);
+        writeHeader(paxEntry);
+        write(ByteBuffer.wrap(data));
+        padToRecord();
+    }
+
+    private void writeHeader(TarArchiveEntry entry) throws IOException {
+        //star模式下超过8GB的大小以二进制编码写入
+        entry.writeEntryHeader(header, encoding, true);
+        write(ByteBuffer.wrap(header));
+    }
+
+    private void padToRecord() throws IOException {
+        long remainder = written % RECORD_SIZE;
+        if (remainder != 0) {
+            writeZeros((int) (RECORD_SIZE - remainder));
+        }
+    }
+
+    private void writeZeros(int length) throws IOException {
+        write(ByteBuffer.allocate(length));
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.h2t.study.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 解压出的文件的写出方式，一次解压共用一个，关闭时等待全部写出
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/03 11:30
+ */
+public interface TargetWriter extends Closeable {
+    /**
+     * 创建（或清空）文件并返回写入该文件的输出流
+     *
+     * @param file 目标文件
+     * @return 输出流
+     */
+    OutputStream open(File file) throws IOException;
+}
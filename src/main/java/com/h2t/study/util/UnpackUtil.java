@@ -3,14 +3,28 @@ package com.h2t.study.util;
 import com.github.junrar.Archive;
 import com.github.junrar.exception.RarException;
 import com.github.junrar.rarfile.FileHeader;
+import com.h2t.study.enums.FileTypeEnum;
+import com.h2t.study.exception.ArchiveCancelledException;
+import com.h2t.study.exception.CustomException;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.utils.CountingInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.util.Enumeration;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -23,7 +37,6 @@ import java.util.zip.ZipFile;
  */
 public class UnpackUtil {
     private final static Logger LOGGER = LoggerFactory.getLogger(UnpackUtil.class);
-    private static final int BUFFER_SIZE = 1024;
 
     /**
      * 解压zip格式的压缩包
@@ -32,50 +45,313 @@ public class UnpackUtil {
      * @param targetPath 解压路径
      */
     public static void unpackZip(String sourcePath, String targetPath) {
-        File sourceFile = FileUtil.validateSourcePath(sourcePath);
-        unpackZip(sourceFile, targetPath);
+        unpackZip(sourcePath, targetPath, ArchiveOptions.DEFAULT);
     }
 
     public static void unpackZip(File sourceFile, String targetPath) {
+        unpackZip(sourceFile, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压zip格式的压缩包，按options.parallelism并行解压
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param options    解压参数
+     */
+    public static void unpackZip(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackZip(sourceFile, targetPath, options);
+    }
+
+    public static void unpackZip(File sourceFile, String targetPath, ArchiveOptions options) {
+        unpackZip(sourceFile, targetPath, options.getParallelism(), options);
+    }
+
+    /**
+     * 解压zip格式的压缩包，并行模式
+     * 按中央目录将条目分片交给固定大小的线程池，各线程独立随机读取、解压并写出各自的条目
+     *
+     * @param sourcePath  待解压文件路径
+     * @param targetPath  解压路径
+     * @param parallelism 并行线程数，小于等于1时在调用线程顺序解压
+     */
+    public static void unpackZip(String sourcePath, String targetPath, int parallelism) {
+        unpackZip(sourcePath, targetPath, parallelism, ArchiveOptions.DEFAULT);
+    }
+
+    public static void unpackZip(File sourceFile, String targetPath, int parallelism) {
+        unpackZip(sourceFile, targetPath, parallelism, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压zip格式的压缩包，并行模式
+     *
+     * @param sourcePath  待解压文件路径
+     * @param targetPath  解压路径
+     * @param parallelism 并行线程数，小于等于1时在调用线程顺序解压
+     * @param options     解压参数
+     */
+    public static void unpackZip(String sourcePath, String targetPath, int parallelism, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackZip(sourceFile, targetPath, parallelism, options);
+    }
+
+    public static void unpackZip(File sourceFile, String targetPath, int parallelism, ArchiveOptions options) {
+        unpackZip(sourceFile, targetPath, parallelism, EntryFilters.ALL, options);
+    }
+
+    /**
+     * 只解压zip中名称匹配的条目
+     * 按中央目录筛选，不匹配的条目不会被读取和解压
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param filter     条目过滤器，参数为条目名称，可使用EntryFilters.glob
+     */
+    public static void unpackZip(String sourcePath, String targetPath, Predicate<String> filter) {
+        unpackZip(sourcePath, targetPath, filter, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 只解压zip中名称匹配的条目，按options.parallelism并行解压
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param filter     条目过滤器，参数为条目名称
+     * @param options    解压参数
+     */
+    public static void unpackZip(String sourcePath, String targetPath, Predicate<String> filter, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackZip(sourceFile, targetPath, filter, options);
+    }
+
+    public static void unpackZip(File sourceFile, String targetPath, Predicate<String> filter, ArchiveOptions options) {
+        unpackZip(sourceFile, targetPath, options.getParallelism(), filter, options);
+    }
+
+    private static void unpackZip(File sourceFile, String targetPath, int parallelism, Predicate<String> filter,
+                                  ArchiveOptions options) {
+        try {
+            doUnpackZip(sourceFile, targetPath, parallelism, filter, options);
+        } catch (ArchiveCancelledException e) {
+            LOGGER.info("unpack zip cancelled, file name:{}", sourceFile.getName());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("unpack zip throw exception:{}", e);
+        }
+    }
+
+    private static void doUnpackZip(File sourceFile, String targetPath, int parallelism, Predicate<String> filter,
+                                    ArchiveOptions options) throws IOException {
         //校验解压地址是否存在
         FileUtil.validateTargetPath(targetPath);
 
-        LOGGER.info("start to unpack zip file, file name:{}", sourceFile.getName());
-        long start = System.currentTimeMillis();
-        try (ZipFile zipFile = new ZipFile(sourceFile)) {
-            Enumeration<?> entries = zipFile.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = (ZipEntry) entries.nextElement();
-                // 如果是文件夹，就创建个文件夹
-                if (entry.isDirectory()) {
-                    String dirPath = targetPath + File.separator + entry.getName();
-                    File dir = new File(dirPath);
-                    dir.mkdirs();
-                } else {
-                    // 如果是文件，就先创建一个文件，然后用io流把内容copy过去
-                    File tempFile = new File(targetPath + File.separator + entry.getName());
-                    // 保证这个文件的父文件夹必须要存在
-                    if (!tempFile.getParentFile().exists()) {
-                        tempFile.getParentFile().mkdirs();
-                    }
-                    tempFile.createNewFile();
-
-                    // 将压缩文件内容写入到这个文件中
-                    try (InputStream is = zipFile.getInputStream(entry);
-                         FileOutputStream fos = new FileOutputStream(tempFile)) {
-                        int len;
-                        byte[] buf = new byte[BUFFER_SIZE];
-                        while ((len = is.read(buf)) != -1) {
-                            fos.write(buf, 0, len);
-                        }
-                    }
+        LOGGER.info("start to unpack zip file, file name:{}, parallelism:{}", sourceFile.getName(), parallelism);
+        ArchiveMetrics.Recording recording = ArchiveMetrics.start(ArchiveMetrics.UNPACK, FileTypeEnum.ZIP);
+        recording.compressedSize(sourceFile.length());
+        try {
+            if (options.isMemoryMapped()) {
+                try (MappedArchiveReader reader = MappedArchiveReader.openZip(sourceFile)) {
+                    List<MappedArchiveReader.Entry> entries = reader.getEntries().stream()
+                            .filter(entry -> filter.test(entry.getName())).collect(Collectors.toList());
+                    ProgressTracker tracker = ProgressTracker.of(options,
+                            () -> entries.stream().mapToLong(MappedArchiveReader.Entry::getSize).sum());
+                    unpackEntries(entries, parallelism, options.getExecutor(), entry -> unpackMappedEntry(reader, entry, targetPath, options, recording, tracker));
+                }
+            } else {
+                try (ZipFile zipFile = new ZipFile(sourceFile);
+                     TargetWriter writer = targetWriter(options, parallelism > 1)) {
+                    List<? extends ZipEntry> entries = Collections.list(zipFile.entries()).stream()
+                            .filter(entry -> filter.test(entry.getName())).collect(Collectors.toList());
+                    ProgressTracker tracker = ProgressTracker.of(options,
+                            () -> entries.stream().mapToLong(entry -> Math.max(0, entry.getSize())).sum());
+                    unpackEntries(entries, parallelism, options.getExecutor(), entry -> unpackZipEntry(zipFile, entry, targetPath, writer, options, recording, tracker));
                 }
+            }
+        } catch (ArchiveCancelledException e) {
+            recording.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.fail(e);
+            throw e;
+        } finally {
+            LOGGER.info("finish unpack zip file, file name:{}, cost:{} ms", sourceFile.getName(), recording.stop());
+        }
+    }
 
+    /**
+     * 解压全部条目，parallelism大于1时将条目按顺序均分为parallelism段，每段由一个线程解压
+     *
+     * @param entries     全部条目
+     * @param parallelism 并行线程数
+     * @param shared      共享线程池，为null时创建本次解压专用的线程池
+     * @param handler     单个条目的解压逻辑
+     */
+    private static <T> void unpackEntries(List<T> entries, int parallelism, ExecutorService shared,
+                                          EntryHandler<T> handler) throws IOException {
+        //只有一个条目时无需线程池
+        if (parallelism <= 1 || entries.size() <= 1) {
+            for (T entry : entries) {
+                handler.handle(entry);
             }
-            LOGGER.info("finish unpack zip file, file name:{}, cost:{} ms", sourceFile.getName(), System.currentTimeMillis() - start);
-        } catch (Exception e) {
-            LOGGER.error("unpack zip throw exception:{}", e);
+            return;
         }
+
+        int threads = Math.min(parallelism, entries.size());
+        int partitionSize = (entries.size() + threads - 1) / threads;
+        ExecutorService executor = shared != null ? shared : Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>(threads);
+        try {
+            for (int from = 0; from < entries.size(); from += partitionSize) {
+                List<T> partition = entries.subList(from, Math.min(entries.size(), from + partitionSize));
+                futures.add(executor.submit(() -> {
+                    for (T entry : partition) {
+                        handler.handle(entry);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("parallel unpack interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("parallel unpack failed", cause);
+        } finally {
+            if (shared == null) {
+                executor.shutdownNow();
+            } else {
+                //共享线程池不能关闭，只取消本次解压尚未完成的分段
+                futures.forEach(future -> future.cancel(true));
+            }
+        }
+    }
+
+    /**
+     * 按格式解压，与unpackZip、unpackTarGz等方法相同，但异常直接抛出给调用方而不是只记录日志，
+     * 供需要感知失败的调用方使用（如ArchiveJobService）
+     *
+     * @param type       压缩格式
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param options    解压参数
+     */
+    public static void unpack(FileTypeEnum type, String sourcePath, String targetPath, ArchiveOptions options) throws IOException {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        switch (type) {
+            case ZIP:
+                doUnpackZip(sourceFile, targetPath, options.getParallelism(), EntryFilters.ALL, options);
+                break;
+            case RAR:
+                doUnpackRar(sourceFile, targetPath, EntryFilters.ALL, options);
+                break;
+            case TAR:
+                doUnpackTar(sourceFile, targetPath, EntryFilters.ALL, options);
+                break;
+            case GZ:
+                doUnpackCompressedFile(sourceFile, targetPath, gzTargetOf(sourceFile, targetPath), type, options);
+                break;
+            case ZST:
+            case LZ4:
+                doUnpackCompressedFile(sourceFile, targetPath,
+                        new File(targetPath, stripExtension(sourceFile.getName(), type)), type, options);
+                break;
+            case TARGZ:
+            case TARZST:
+            case TARLZ4:
+            case TARXZ:
+            case TARBZ2:
+                doUnpackCompressedTar(sourceFile, targetPath, type, EntryFilters.ALL, options);
+                break;
+            default:
+                throw new CustomException("unsupported archive type: " + type.getTypeName());
+        }
+    }
+
+    /**
+     * 解压内存映射中的单个条目
+     *
+     * @param reader     内存映射读取器
+     * @param entry      条目
+     * @param targetPath 解压路径
+     * @param options    解压参数
+     * @param recording  指标记录
+     * @param tracker    进度与取消，按条目检查取消
+     */
+    private static void unpackMappedEntry(MappedArchiveReader reader, MappedArchiveReader.Entry entry, String targetPath,
+                                          ArchiveOptions options, ArchiveMetrics.Recording recording,
+                                          ProgressTracker tracker) throws IOException {
+        tracker.checkCancelled();
+        File file = new File(targetPath, entry.getName());
+        if (entry.isDirectory()) {
+            file.mkdirs();
+            return;
+        }
+        if (!file.getParentFile().exists()) {
+            file.getParentFile().mkdirs();
+        }
+        tracker.entryStarted(entry.getName(), entry.getSize());
+        reader.extract(entry, file, options);
+        tracker.add(entry.getSize());
+        tracker.entryFinished(entry.getName(), entry.getSize());
+        recording.entry(entry.getSize());
+    }
+
+    /**
+     * 解压单个zip条目
+     *
+     * @param zipFile    zip文件
+     * @param entry      条目
+     * @param targetPath 解压路径
+     * @param writer     写出方式，为null时同步写入
+     * @param options    解压参数
+     * @param recording  指标记录
+     * @param tracker    进度与取消
+     */
+    private static void unpackZipEntry(ZipFile zipFile, ZipEntry entry, String targetPath, TargetWriter writer,
+                                       ArchiveOptions options, ArchiveMetrics.Recording recording,
+                                       ProgressTracker tracker) throws IOException {
+        tracker.checkCancelled();
+        // 如果是文件夹，就创建个文件夹
+        if (entry.isDirectory()) {
+            String dirPath = targetPath + File.separator + entry.getName();
+            File dir = new File(dirPath);
+            dir.mkdirs();
+            return;
+        }
+
+        // 如果是文件，就先创建一个文件，然后用io流把内容copy过去
+        File tempFile = new File(targetPath + File.separator + entry.getName());
+        // 保证这个文件的父文件夹必须要存在
+        if (!tempFile.getParentFile().exists()) {
+            tempFile.getParentFile().mkdirs();
+        }
+
+        // 将压缩文件内容写入到这个文件中
+        tracker.entryStarted(entry.getName(), entry.getSize());
+        try (InputStream is = zipFile.getInputStream(entry);
+             OutputStream fos = openTarget(tempFile, writer)) {
+            int len;
+            byte[] buf = options.allocateBuffer();
+            while ((len = is.read(buf)) != -1) {
+                tracker.add(len);
+                fos.write(buf, 0, len);
+            }
+        } catch (ArchiveCancelledException e) {
+            tracker.discardIfCancelled(tempFile);
+            throw e;
+        }
+        tracker.entryFinished(entry.getName(), entry.getSize());
+        recording.entry(entry.getSize());
     }
 
     /**
@@ -85,17 +361,80 @@ public class UnpackUtil {
      * @param targetPath 解压路径
      */
     public static void unpackRar(String sourcePath, String targetPath) {
-        File sourceFile = FileUtil.validateSourcePath(sourcePath);
-        unpackRar(sourceFile, targetPath);
+        unpackRar(sourcePath, targetPath, ArchiveOptions.DEFAULT);
     }
 
     public static void unpackRar(File sourceFile, String targetPath) {
+        unpackRar(sourceFile, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压rar格式的压缩包
+     *
+     * @param sourcePath 待解压文件
+     * @param targetPath 解压路径
+     * @param options    解压参数
+     */
+    public static void unpackRar(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackRar(sourceFile, targetPath, options);
+    }
+
+    public static void unpackRar(File sourceFile, String targetPath, ArchiveOptions options) {
+        unpackRar(sourceFile, targetPath, EntryFilters.ALL, options);
+    }
+
+    /**
+     * 只解压rar中名称匹配的条目，不匹配的条目不解压
+     *
+     * @param sourcePath 待解压文件
+     * @param targetPath 解压路径
+     * @param filter     条目过滤器，参数为条目名称（以/分隔）
+     */
+    public static void unpackRar(String sourcePath, String targetPath, Predicate<String> filter) {
+        unpackRar(sourcePath, targetPath, filter, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 只解压rar中名称匹配的条目
+     *
+     * @param sourcePath 待解压文件
+     * @param targetPath 解压路径
+     * @param filter     条目过滤器，参数为条目名称（以/分隔）
+     * @param options    解压参数
+     */
+    public static void unpackRar(String sourcePath, String targetPath, Predicate<String> filter, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackRar(sourceFile, targetPath, filter, options);
+    }
+
+    public static void unpackRar(File sourceFile, String targetPath, Predicate<String> filter, ArchiveOptions options) {
+        try {
+            doUnpackRar(sourceFile, targetPath, filter, options);
+        } catch (ArchiveCancelledException e) {
+            LOGGER.info("unpack rar cancelled, file name:{}", sourceFile.getName());
+        } catch (IOException e) {
+            LOGGER.error("unpack rar throw exception, file name:{}, e:{}", sourceFile.getName(), e);
+        }
+    }
+
+    /**
+     * 单个条目解压失败时继续解压其余条目，全部结束后抛出第一个失败
+     */
+    private static void doUnpackRar(File sourceFile, String targetPath, Predicate<String> filter,
+                                    ArchiveOptions options) throws IOException {
         //校验解压地址是否存在
         FileUtil.validateTargetPath(targetPath);
 
         LOGGER.info("start to unpack rar file, file name:{}", sourceFile.getName());
-        long start = System.currentTimeMillis();
-        try (Archive archive = new Archive(new FileInputStream(sourceFile))) {
+        ArchiveMetrics.Recording recording = ArchiveMetrics.start(ArchiveMetrics.UNPACK, FileTypeEnum.RAR);
+        recording.compressedSize(sourceFile.length());
+        ProgressTracker tracker = ProgressTracker.of(options, () -> ArchiveLister.UNKNOWN);
+        RarException entryFailure = null;
+        try (CountingInputStream source = new CountingInputStream(IoStreams.openFile(sourceFile, options));
+             Archive archive = new Archive(source);
+             TargetWriter writer = targetWriter(options, false)) {
+            tracker.trackSource(source::getBytesRead, sourceFile.length());
             FileHeader fileHeader = archive.nextFileHeader();
             while (fileHeader != null) {
                 //如果是文件夹
@@ -105,8 +444,12 @@ public class UnpackUtil {
                 }
 
                 //防止文件名中文乱码问题的处理
-                File out = new File(String.format("%s%s%s", targetPath, File.separator, fileHeader.getFileNameW().isEmpty() ? fileHeader
-                        .getFileNameString() : fileHeader.getFileNameW()));
+                String name = fileHeader.getFileNameW().isEmpty() ? fileHeader.getFileNameString() : fileHeader.getFileNameW();
+                if (!filter.test(name.replace('\\', '/'))) {
+                    fileHeader = archive.nextFileHeader();
+                    continue;
+                }
+                File out = new File(String.format("%s%s%s", targetPath, File.separator, name));
 
                 if (!out.exists()) {
                     if (!out.getParentFile().exists()) {
@@ -114,18 +457,37 @@ public class UnpackUtil {
                     }
                     out.createNewFile();
                 }
-                try (FileOutputStream os = new FileOutputStream(out)) {
+                tracker.entryStarted(name, fileHeader.getFullUnpackSize());
+                try (OutputStream os = new BufferedOutputStream(tracker.track(openTarget(out, writer)), options.getBufferSize())) {
                     archive.extractFile(fileHeader, os);
+                    tracker.entryFinished(name, fileHeader.getFullUnpackSize());
+                    recording.entry(fileHeader.getFullUnpackSize());
                 } catch (RarException e) {
-                    LOGGER.error("unpack rar throw exception, filename:{}, e:{}", sourceFile.getName(), e);
+                    //取消时junrar将异常包装为RarException，删除未写完的文件后中止
+                    tracker.discardIfCancelled(out);
+                    tracker.checkCancelled();
+                    LOGGER.error("unpack rar entry throw exception, file name:{}, entry:{}, e:{}", sourceFile.getName(), name, e);
+                    if (entryFailure == null) {
+                        entryFailure = e;
+                    }
                 }
                 fileHeader = archive.nextFileHeader();
             }
-        } catch (IOException | RarException e) {
-            LOGGER.error("unpack rar throw exception, file name:{}, e:{}", sourceFile.getName(), e);
+            if (entryFailure != null) {
+                throw new IOException("unpack rar entry failed, file name: " + sourceFile.getName(), entryFailure);
+            }
+        } catch (RarException e) {
+            recording.fail(e);
+            throw new IOException("unpack rar failed, file name: " + sourceFile.getName(), e);
+        } catch (ArchiveCancelledException e) {
+            recording.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.fail(e);
+            throw e;
+        } finally {
+            LOGGER.info("finish unpack rar file, file name:{}, cost:{} ms", sourceFile.getName(), recording.stop());
         }
-
-        LOGGER.info("finish unpack rar file, file name:{}, cost:{} ms", sourceFile.getName(), System.currentTimeMillis() - start);
     }
 
 
@@ -137,40 +499,163 @@ public class UnpackUtil {
      * @return 解压出的tar文件的绝对路径
      */
     public static String unpackGz(String sourcePath, String targetPath) {
-        File sourceFile = FileUtil.validateSourcePath(sourcePath);
-        return unpackGz(sourceFile, targetPath);
+        return unpackGz(sourcePath, targetPath, ArchiveOptions.DEFAULT);
     }
 
     public static String unpackGz(File sourceFile, String targetPath) {
+        return unpackGz(sourceFile, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压tar.gz格式的压缩包为tar压缩包
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param options    解压参数
+     * @return 解压出的tar文件的绝对路径
+     */
+    public static String unpackGz(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        return unpackGz(sourceFile, targetPath, options);
+    }
+
+    public static String unpackGz(File sourceFile, String targetPath, ArchiveOptions options) {
+        File rarFile = gzTargetOf(sourceFile, targetPath);
+        unpackCompressedFile(sourceFile, targetPath, rarFile, FileTypeEnum.GZ, options);
+        return rarFile.getAbsolutePath();
+    }
+
+    private static File gzTargetOf(File sourceFile, String targetPath) {
+        return new File(targetPath, String.format("%s.%s", sourceFile.getName().split("\\.")[0], "tar"));
+    }
+
+    /**
+     * 解压zst格式的单个文件
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @return 解压出的文件的绝对路径
+     */
+    public static String unpackZst(String sourcePath, String targetPath) {
+        return unpackZst(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压zst格式的单个文件
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param options    解压参数
+     * @return 解压出的文件的绝对路径
+     */
+    public static String unpackZst(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        return unpackZst(sourceFile, targetPath, options);
+    }
+
+    public static String unpackZst(File sourceFile, String targetPath, ArchiveOptions options) {
+        File targetFile = new File(targetPath, stripExtension(sourceFile.getName(), FileTypeEnum.ZST));
+        unpackCompressedFile(sourceFile, targetPath, targetFile, FileTypeEnum.ZST, options);
+        return targetFile.getAbsolutePath();
+    }
+
+    /**
+     * 解压lz4格式的单个文件
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @return 解压出的文件的绝对路径
+     */
+    public static String unpackLz4(String sourcePath, String targetPath) {
+        return unpackLz4(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压lz4格式的单个文件
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param options    解压参数
+     * @return 解压出的文件的绝对路径
+     */
+    public static String unpackLz4(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        return unpackLz4(sourceFile, targetPath, options);
+    }
+
+    public static String unpackLz4(File sourceFile, String targetPath, ArchiveOptions options) {
+        File targetFile = new File(targetPath, stripExtension(sourceFile.getName(), FileTypeEnum.LZ4));
+        unpackCompressedFile(sourceFile, targetPath, targetFile, FileTypeEnum.LZ4, options);
+        return targetFile.getAbsolutePath();
+    }
+
+    /**
+     * 解压gz、zst、lz4等格式的单个文件
+     *
+     * @param sourceFile 待解压文件
+     * @param targetPath 解压路径
+     * @param targetFile 解压出的文件
+     * @param type       压缩格式
+     * @param options    解压参数
+     */
+    private static void unpackCompressedFile(File sourceFile, String targetPath, File targetFile, FileTypeEnum type,
+                                             ArchiveOptions options) {
+        try {
+            doUnpackCompressedFile(sourceFile, targetPath, targetFile, type, options);
+        } catch (ArchiveCancelledException e) {
+            LOGGER.info("unpack {} cancelled, file name:{}", type.getTypeName(), sourceFile.getName());
+        } catch (IOException e) {
+            LOGGER.error("unpack {} throw exception, file name:{}, e:{}", type.getTypeName(), sourceFile.getName(), e);
+        }
+    }
+
+    private static void doUnpackCompressedFile(File sourceFile, String targetPath, File targetFile, FileTypeEnum type,
+                                               ArchiveOptions options) throws IOException {
         //校验解压地址是否存在
         FileUtil.validateTargetPath(targetPath);
 
-        File rarFile = new File(targetPath,
-                String.format("%s.%s", sourceFile.getName().split("\\.")[0], "tar"));
-        LOGGER.info("start to unpack tar.gz file to tar, file name:{}", sourceFile.getName());
-        long start = System.currentTimeMillis();
-        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(sourceFile))) {
-            try (BufferedOutputStream bos =
-                         new BufferedOutputStream(new FileOutputStream(rarFile))) {
-                try (GzipCompressorInputStream gis =
-                             new GzipCompressorInputStream(bis)) {
-                    byte[] buffer = new byte[BUFFER_SIZE];
-                    int read;
-                    while ((read = gis.read(buffer)) != -1) {
-                        bos.write(buffer, 0, read);
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
+        LOGGER.info("start to unpack {} file, file name:{}", type.getTypeName(), sourceFile.getName());
+        ArchiveMetrics.Recording recording = ArchiveMetrics.start(ArchiveMetrics.UNPACK, type);
+        recording.compressedSize(sourceFile.length());
+        ProgressTracker tracker = ProgressTracker.of(options, () -> ArchiveLister.UNKNOWN);
+        try (InputStream cis = CompressorStreams.decompress(type, sourceFile, options);
+             TargetWriter writer = targetWriter(options, false)) {
+            tracker.entryStarted(targetFile.getName(), ArchiveLister.UNKNOWN);
+            long size = 0;
+            try (OutputStream fos = openTarget(targetFile, writer)) {
+                byte[] buffer = options.allocateBuffer();
+                int read;
+                while ((read = cis.read(buffer)) != -1) {
+                    tracker.add(read);
+                    fos.write(buffer, 0, read);
+                    size += read;
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
             }
-
-        } catch (IOException e) {
-            e.printStackTrace();
+            tracker.entryFinished(targetFile.getName(), size);
+            recording.entry(size);
+        } catch (ArchiveCancelledException e) {
+            recording.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.fail(e);
+            throw e;
+        } finally {
+            tracker.discardIfCancelled(targetFile);
+            LOGGER.info("finish unpack {} file, file name:{}, cost:{} ms", type.getTypeName(), sourceFile.getName(), recording.stop());
         }
-        LOGGER.info("finish unpack tar.gz file to tar, file name:{}, cost:{} ms", sourceFile.getName(), System.currentTimeMillis() - start);
-        return rarFile.getAbsolutePath();
+    }
+
+    /**
+     * 去掉压缩格式后缀作为解压出的文件名
+     *
+     * @param fileName 压缩文件名
+     * @param type     压缩格式
+     * @return 解压出的文件名
+     */
+    private static String stripExtension(String fileName, FileTypeEnum type) {
+        String suffix = "." + type.getTypeName();
+        return fileName.endsWith(suffix) && fileName.length() > suffix.length()
+                ? fileName.substring(0, fileName.length() - suffix.length()) : fileName + ".out";
     }
 
     /**
@@ -180,56 +665,666 @@ public class UnpackUtil {
      * @param targetPath 解压文件路径
      */
     public static void unpackTar(String sourcePath, String targetPath) {
-        File sourceFile = FileUtil.validateSourcePath(sourcePath);
-        unpackTar(sourceFile, targetPath);
+        unpackTar(sourcePath, targetPath, ArchiveOptions.DEFAULT);
     }
 
     public static void unpackTar(File sourceFile, String targetPath) {
+        unpackTar(sourceFile, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压tar格式的压缩包
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压文件路径
+     * @param options    解压参数
+     */
+    public static void unpackTar(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackTar(sourceFile, targetPath, options);
+    }
+
+    public static void unpackTar(File sourceFile, String targetPath, ArchiveOptions options) {
+        unpackTar(sourceFile, targetPath, EntryFilters.ALL, options);
+    }
+
+    /**
+     * 只解压tar中名称匹配的条目，不匹配的条目直接跳过其数据
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压文件路径
+     * @param filter     条目过滤器，参数为条目名称
+     */
+    public static void unpackTar(String sourcePath, String targetPath, Predicate<String> filter) {
+        unpackTar(sourcePath, targetPath, filter, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 只解压tar中名称匹配的条目
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压文件路径
+     * @param filter     条目过滤器，参数为条目名称
+     * @param options    解压参数
+     */
+    public static void unpackTar(String sourcePath, String targetPath, Predicate<String> filter, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackTar(sourceFile, targetPath, filter, options);
+    }
+
+    public static void unpackTar(File sourceFile, String targetPath, Predicate<String> filter, ArchiveOptions options) {
+        try {
+            doUnpackTar(sourceFile, targetPath, filter, options);
+        } catch (ArchiveCancelledException e) {
+            LOGGER.info("unpack tar cancelled, file name:{}", sourceFile.getName());
+        } catch (IOException e) {
+            LOGGER.error("unpack tar throw exception, file name:{}, e:{}", sourceFile.getName(), e);
+        }
+    }
+
+    private static void doUnpackTar(File sourceFile, String targetPath, Predicate<String> filter,
+                                    ArchiveOptions options) throws IOException {
         //校验解压地址是否存在
         FileUtil.validateTargetPath(targetPath);
 
         LOGGER.info("start to unpack tar file, file name:{}", sourceFile.getName());
-        long start = System.currentTimeMillis();
-        try (TarArchiveInputStream tis = new TarArchiveInputStream(new FileInputStream(sourceFile))) {
-            TarArchiveEntry tarArchiveEntry;
-            while ((tarArchiveEntry = tis.getNextTarEntry()) != null) {
-                String name = tarArchiveEntry.getName();
-                File tarFile = new File(targetPath, name);
-                if (!tarFile.getParentFile().exists()) {
-                    tarFile.getParentFile().mkdirs();
-                }
-
-                try (BufferedOutputStream bos =
-                             new BufferedOutputStream(new FileOutputStream(tarFile))) {
-                    int read;
-                    byte[] buffer = new byte[BUFFER_SIZE];
-                    while ((read = tis.read(buffer)) != -1) {
-                        bos.write(buffer, 0, read);
+        ArchiveMetrics.Recording recording = ArchiveMetrics.start(ArchiveMetrics.UNPACK, FileTypeEnum.TAR);
+        recording.compressedSize(sourceFile.length());
+        try {
+            if (options.isMemoryMapped()) {
+                try (MappedArchiveReader reader = MappedArchiveReader.openTar(sourceFile)) {
+                    List<MappedArchiveReader.Entry> entries = reader.getEntries().stream()
+                            .filter(entry -> filter.test(entry.getName())).collect(Collectors.toList());
+                    ProgressTracker tracker = ProgressTracker.of(options,
+                            () -> entries.stream().mapToLong(MappedArchiveReader.Entry::getSize).sum());
+                    for (MappedArchiveReader.Entry entry : entries) {
+                        unpackMappedEntry(reader, entry, targetPath, options, recording, tracker);
                     }
                 }
+            } else {
+                ProgressTracker tracker = ProgressTracker.of(options, () -> ArchiveLister.UNKNOWN);
+                try (CountingInputStream source = new CountingInputStream(IoStreams.openFile(sourceFile, options));
+                     TarArchiveInputStream tis = new TarArchiveInputStream(source)) {
+                    tracker.trackSource(source::getBytesRead, sourceFile.length());
+                    unpackTar(tis, targetPath, filter, options, recording, tracker);
+                }
             }
-            LOGGER.info("finish unpack tar file, file name:{}, cost:{} ms", sourceFile.getName(), System.currentTimeMillis() - start);
-        } catch (IOException e) {
-            e.printStackTrace();
+        } catch (ArchiveCancelledException e) {
+            recording.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.fail(e);
+            throw e;
+        } finally {
+            LOGGER.info("finish unpack tar file, file name:{}, cost:{} ms", sourceFile.getName(), recording.stop());
+        }
+    }
+
+    /**
+     * 将tar流中的条目逐个写出到解压路径，tar与tar.gz共用
+     *
+     * @param tis        tar输入流
+     * @param targetPath 解压路径
+     * @param filter     条目过滤器，不匹配的条目在读取下一个条目时被跳过
+     * @param options    解压参数
+     * @param recording  指标记录
+     * @param tracker    进度与取消
+     */
+    private static void unpackTar(TarArchiveInputStream tis, String targetPath, Predicate<String> filter,
+                                  ArchiveOptions options, ArchiveMetrics.Recording recording,
+                                  ProgressTracker tracker) throws IOException {
+        try (TargetWriter writer = targetWriter(options, false)) {
+            unpackTar(tis, targetPath, filter, writer, options, recording, tracker);
+        }
+    }
+
+    private static void unpackTar(TarArchiveInputStream tis, String targetPath, Predicate<String> filter, TargetWriter writer,
+                                  ArchiveOptions options, ArchiveMetrics.Recording recording,
+                                  ProgressTracker tracker) throws IOException {
+        TarArchiveEntry tarArchiveEntry;
+        while ((tarArchiveEntry = tis.getNextTarEntry()) != null) {
+            tracker.checkCancelled();
+            String name = tarArchiveEntry.getName();
+            if (!filter.test(name)) {
+                continue;
+            }
+            File tarFile = new File(targetPath, name);
+            if (tarArchiveEntry.isDirectory()) {
+                tarFile.mkdirs();
+                continue;
+            }
+            if (!tarFile.getParentFile().exists()) {
+                tarFile.getParentFile().mkdirs();
+            }
+
+            tracker.entryStarted(name, tarArchiveEntry.getSize());
+            try (OutputStream bos = openTarget(tarFile, writer)) {
+                int read;
+                byte[] buffer = options.allocateBuffer();
+                while ((read = tis.read(buffer)) != -1) {
+                    tracker.add(read);
+                    bos.write(buffer, 0, read);
+                }
+            } catch (ArchiveCancelledException e) {
+                tracker.discardIfCancelled(tarFile);
+                throw e;
+            }
+            tracker.entryFinished(name, tarArchiveEntry.getSize());
+            recording.entry(tarArchiveEntry.getSize());
         }
     }
 
     /**
      * 解压tar.gz
+     * gzip解压流直接作为tar流的输入，边解压边写出文件，不再产生中间tar文件
      *
      * @param sourcePath 带解压文件路径
      * @param targetPath 解压路径
      */
     public static void unpackTarGz(String sourcePath, String targetPath) {
-        File sourceFile = new File(sourcePath);
-        LOGGER.info("start to unpack tar.gz file, file name:{}", sourceFile.getName());
+        unpackTarGz(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    public static void unpackTarGz(File sourceFile, String targetPath) {
+        unpackTarGz(sourceFile, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压tar.gz
+     *
+     * @param sourcePath 带解压文件路径
+     * @param targetPath 解压路径
+     * @param options    解压参数
+     */
+    public static void unpackTarGz(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackTarGz(sourceFile, targetPath, options);
+    }
+
+    public static void unpackTarGz(File sourceFile, String targetPath, ArchiveOptions options) {
+        unpackTarGz(sourceFile, targetPath, EntryFilters.ALL, options);
+    }
+
+    /**
+     * 只解压tar.gz中名称匹配的条目，不匹配的条目只解压不写出
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param filter     条目过滤器，参数为条目名称
+     */
+    public static void unpackTarGz(String sourcePath, String targetPath, Predicate<String> filter) {
+        unpackTarGz(sourcePath, targetPath, filter, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 只解压tar.gz中名称匹配的条目
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param filter     条目过滤器，参数为条目名称
+     * @param options    解压参数
+     */
+    public static void unpackTarGz(String sourcePath, String targetPath, Predicate<String> filter, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackTarGz(sourceFile, targetPath, filter, options);
+    }
+
+    public static void unpackTarGz(File sourceFile, String targetPath, Predicate<String> filter, ArchiveOptions options) {
+        unpackCompressedTar(sourceFile, targetPath, FileTypeEnum.TARGZ, filter, options);
+    }
+
+    /**
+     * 为tar.gz建立随机访问索引，保存在源文件同目录下（源文件名 + .gzidx）
+     *
+     * @param sourcePath tar.gz文件路径
+     * @return 索引文件路径，建立失败时返回null
+     */
+    public static String indexTarGz(String sourcePath) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        return indexTarGz(sourceFile, GzipIndex.DEFAULT_SPAN);
+    }
+
+    /**
+     * 为tar.gz建立随机访问索引
+     *
+     * @param sourceFile tar.gz文件
+     * @param span       检查点间隔（解压后字节数），越小单条目解压越快，索引文件越大
+     * @return 索引文件路径，建立失败时返回null
+     */
+    public static String indexTarGz(File sourceFile, long span) {
+        File indexFile = GzipIndex.indexFileOf(sourceFile);
+        LOGGER.info("start to index tar.gz file, file name:{}", sourceFile.getName());
         long start = System.currentTimeMillis();
-        //1.tar.gz解压为tar文件
-        String tarPath = unpackGz(sourcePath, targetPath);
-        //2.解压tar文件
-        unpackTar(tarPath, targetPath);
-        //3.删除tar文件
-        FileUtil.deleteFile(tarPath);
-        LOGGER.info("finish unpack tar.gz file, file name:{}, cost:{} ms", sourceFile.getName(), System.currentTimeMillis() - start);
+        try {
+            GzipIndex index = GzipIndex.build(sourceFile, indexFile, span);
+            LOGGER.info("finish index tar.gz file, file name:{}, checkpoints:{}, cost:{} ms", sourceFile.getName(),
+                    index.getCheckpointCount(), System.currentTimeMillis() - start);
+            return indexFile.getPath();
+        } catch (IOException e) {
+            LOGGER.error("index tar.gz throw exception, file name:{}, e:{}", sourceFile.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 借助索引从tar.gz中解压单个条目，从最近的检查点开始解压，无需解压整个文件
+     * 索引文件不存在或与源文件不匹配时先建立索引
+     *
+     * @param sourcePath tar.gz文件路径
+     * @param entryName  条目名称
+     * @param targetPath 解压路径
+     */
+    public static void unpackTarGzEntry(String sourcePath, String entryName, String targetPath) {
+        unpackTarGzEntry(sourcePath, entryName, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 借助索引从tar.gz中解压单个条目
+     *
+     * @param sourcePath tar.gz文件路径
+     * @param entryName  条目名称
+     * @param targetPath 解压路径
+     * @param options    解压参数
+     */
+    public static void unpackTarGzEntry(String sourcePath, String entryName, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackTarGzEntry(sourceFile, entryName, targetPath, options);
+    }
+
+    public static void unpackTarGzEntry(File sourceFile, String entryName, String targetPath, ArchiveOptions options) {
+        try {
+            doUnpackTarGzEntry(sourceFile, entryName, targetPath, options);
+        } catch (ArchiveCancelledException e) {
+            LOGGER.info("unpack tar.gz entry cancelled, file name:{}, entry:{}", sourceFile.getName(), entryName);
+        } catch (IOException e) {
+            LOGGER.error("unpack tar.gz entry throw exception, file name:{}, entry:{}, e:{}", sourceFile.getName(), entryName, e);
+        }
+    }
+
+    private static void doUnpackTarGzEntry(File sourceFile, String entryName, String targetPath,
+                                           ArchiveOptions options) throws IOException {
+        //校验解压地址是否存在
+        FileUtil.validateTargetPath(targetPath);
+
+        LOGGER.info("start to unpack tar.gz entry, file name:{}, entry:{}", sourceFile.getName(), entryName);
+        ArchiveMetrics.Recording recording = ArchiveMetrics.start(ArchiveMetrics.UNPACK, FileTypeEnum.TARGZ);
+        try {
+            GzipIndex index = loadOrBuildIndex(sourceFile);
+            GzipIndex.Entry entry = index.getEntry(entryName);
+            if (entry == null) {
+                throw new FileNotFoundException("the entry is not exist: " + entryName);
+            }
+            File targetFile = new File(targetPath, entryName);
+            if (entry.isDirectory()) {
+                targetFile.mkdirs();
+            } else {
+                if (!targetFile.getParentFile().exists()) {
+                    targetFile.getParentFile().mkdirs();
+                }
+                ProgressTracker tracker = ProgressTracker.of(options, entry::getSize);
+                tracker.entryStarted(entryName, entry.getSize());
+                try (InputStream in = index.openAt(sourceFile, entry.getOffset());
+                     TargetWriter writer = targetWriter(options, false);
+                     OutputStream fos = openTarget(targetFile, writer)) {
+                    byte[] buffer = options.allocateBuffer();
+                    long remaining = entry.getSize();
+                    while (remaining > 0) {
+                        int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                        if (read == -1) {
+                            throw new EOFException("unexpected end of tar.gz entry: " + entryName);
+                        }
+                        tracker.add(read);
+                        fos.write(buffer, 0, read);
+                        remaining -= read;
+                    }
+                } catch (ArchiveCancelledException e) {
+                    tracker.discardIfCancelled(targetFile);
+                    throw e;
+                }
+                tracker.entryFinished(entryName, entry.getSize());
+                recording.entry(entry.getSize());
+            }
+        } catch (ArchiveCancelledException e) {
+            recording.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.fail(e);
+            throw e;
+        } finally {
+            LOGGER.info("finish unpack tar.gz entry, file name:{}, entry:{}, cost:{} ms", sourceFile.getName(), entryName,
+                    recording.stop());
+        }
+    }
+
+    private static GzipIndex loadOrBuildIndex(File sourceFile) throws IOException {
+        File indexFile = GzipIndex.indexFileOf(sourceFile);
+        if (indexFile.exists()) {
+            try {
+                GzipIndex index = GzipIndex.load(indexFile);
+                if (index.matches(sourceFile)) {
+                    return index;
+                }
+            } catch (IOException e) {
+                LOGGER.warn("load gzip index failed, rebuild, file name:{}, e:{}", indexFile.getName(), e);
+            }
+        }
+        return GzipIndex.build(sourceFile, indexFile, GzipIndex.DEFAULT_SPAN);
+    }
+
+    /**
+     * 解压tar.zst
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     */
+    public static void unpackTarZst(String sourcePath, String targetPath) {
+        unpackTarZst(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压tar.zst
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param options    解压参数
+     */
+    public static void unpackTarZst(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackTarZst(sourceFile, targetPath, options);
+    }
+
+    public static void unpackTarZst(File sourceFile, String targetPath, ArchiveOptions options) {
+        unpackCompressedTar(sourceFile, targetPath, FileTypeEnum.TARZST, EntryFilters.ALL, options);
+    }
+
+    /**
+     * 解压tar.lz4
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     */
+    public static void unpackTarLz4(String sourcePath, String targetPath) {
+        unpackTarLz4(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压tar.lz4
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param options    解压参数
+     */
+    public static void unpackTarLz4(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackTarLz4(sourceFile, targetPath, options);
+    }
+
+    public static void unpackTarLz4(File sourceFile, String targetPath, ArchiveOptions options) {
+        unpackCompressedTar(sourceFile, targetPath, FileTypeEnum.TARLZ4, EntryFilters.ALL, options);
+    }
+
+    /**
+     * 解压tar.xz，多block的文件按block并行解压
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     */
+    public static void unpackTarXz(String sourcePath, String targetPath) {
+        unpackTarXz(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压tar.xz，多block的文件按block并行解压
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param options    解压参数，xzWorkers生效
+     */
+    public static void unpackTarXz(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackTarXz(sourceFile, targetPath, options);
+    }
+
+    public static void unpackTarXz(File sourceFile, String targetPath, ArchiveOptions options) {
+        unpackCompressedTar(sourceFile, targetPath, FileTypeEnum.TARXZ, EntryFilters.ALL, options);
+    }
+
+    /**
+     * 解压tar.bz2，按stream分块并行解压
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     */
+    public static void unpackTarBz2(String sourcePath, String targetPath) {
+        unpackTarBz2(sourcePath, targetPath, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压tar.bz2，按stream分块并行解压
+     *
+     * @param sourcePath 待解压文件路径
+     * @param targetPath 解压路径
+     * @param options    解压参数，bzip2Workers生效
+     */
+    public static void unpackTarBz2(String sourcePath, String targetPath, ArchiveOptions options) {
+        File sourceFile = FileUtil.validateSourcePath(sourcePath);
+        unpackTarBz2(sourceFile, targetPath, options);
+    }
+
+    public static void unpackTarBz2(File sourceFile, String targetPath, ArchiveOptions options) {
+        unpackCompressedTar(sourceFile, targetPath, FileTypeEnum.TARBZ2, EntryFilters.ALL, options);
+    }
+
+    /**
+     * 解压流直接作为tar流的输入，边解压边写出文件，不产生中间tar文件
+     *
+     * @param sourceFile 待解压文件
+     * @param targetPath 解压路径
+     * @param type       压缩格式
+     * @param filter     条目过滤器
+     * @param options    解压参数
+     */
+    private static void unpackCompressedTar(File sourceFile, String targetPath, FileTypeEnum type, Predicate<String> filter,
+                                            ArchiveOptions options) {
+        try {
+            doUnpackCompressedTar(sourceFile, targetPath, type, filter, options);
+        } catch (ArchiveCancelledException e) {
+            LOGGER.info("unpack {} cancelled, file name:{}", type.getTypeName(), sourceFile.getName());
+        } catch (IOException e) {
+            LOGGER.error("unpack {} throw exception, file name:{}, e:{}", type.getTypeName(), sourceFile.getName(), e);
+        }
+    }
+
+    private static void doUnpackCompressedTar(File sourceFile, String targetPath, FileTypeEnum type, Predicate<String> filter,
+                                              ArchiveOptions options) throws IOException {
+        //校验解压地址是否存在
+        FileUtil.validateTargetPath(targetPath);
+
+        LOGGER.info("start to unpack {} file, file name:{}", type.getTypeName(), sourceFile.getName());
+        ArchiveMetrics.Recording recording = ArchiveMetrics.start(ArchiveMetrics.UNPACK, type);
+        recording.compressedSize(sourceFile.length());
+        //解压后的总大小未知，进度中只有已处理的字节数
+        ProgressTracker tracker = ProgressTracker.of(options, () -> ArchiveLister.UNKNOWN);
+        try (TarArchiveInputStream tis = new TarArchiveInputStream(CompressorStreams.decompress(type, sourceFile, options))) {
+            unpackTar(tis, targetPath, filter, options, recording, tracker);
+        } catch (ArchiveCancelledException e) {
+            recording.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.fail(e);
+            throw e;
+        } finally {
+            LOGGER.info("finish unpack {} file, file name:{}, cost:{} ms", type.getTypeName(), sourceFile.getName(), recording.stop());
+        }
+    }
+
+    /**
+     * 从输入流解压，不经过文件系统，每个文件条目回调一次（目录条目不回调）
+     * 支持zip、tar、tar.gz、tar.zst、tar.lz4、tar.xz、tar.bz2、rar，读完后不关闭输入流，异常直接抛出给调用方
+     *
+     * @param in       压缩数据输入流
+     * @param type     压缩格式
+     * @param callback 条目回调
+     */
+    public static void unpackStream(InputStream in, FileTypeEnum type, EntryCallback callback) throws IOException {
+        unpackStream(in, type, callback, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 从输入流解压，不经过文件系统，每个文件条目回调一次
+     *
+     * @param in       压缩数据输入流
+     * @param type     压缩格式
+     * @param callback 条目回调
+     * @param options  解压参数
+     */
+    public static void unpackStream(InputStream in, FileTypeEnum type, EntryCallback callback, ArchiveOptions options) throws IOException {
+        LOGGER.info("start to unpack {} stream", type.getTypeName());
+        ArchiveMetrics.Recording recording = ArchiveMetrics.start(ArchiveMetrics.UNPACK, type);
+        CountingInputStream counter = new CountingInputStream(IoStreams.closeShield(in));
+        InputStream source = new BufferedInputStream(counter, options.getBufferSize());
+        ProgressTracker tracker = ProgressTracker.of(options, () -> ArchiveLister.UNKNOWN);
+        //回调结束后记录条目，流式zip的条目大小可能未知，只计条目数
+        EntryCallback recorded = (entry, data) -> {
+            tracker.entryStarted(entry.getName(), entry.getSize());
+            callback.accept(entry, tracker.track(data));
+            tracker.entryFinished(entry.getName(), entry.getSize());
+            recording.entry(entry.getSize());
+        };
+        try {
+            switch (type) {
+                case ZIP:
+                    try (ZipArchiveInputStream zis = new ZipArchiveInputStream(source, "UTF8", true, true)) {
+                        ZipArchiveEntry entry;
+                        while ((entry = zis.getNextZipEntry()) != null) {
+                            if (!entry.isDirectory()) {
+                                recorded.accept(ArchiveLister.toEntry(entry), IoStreams.closeShield(zis));
+                            }
+                        }
+                    }
+                    break;
+                case TAR:
+                    unpackTarStream(source, recorded);
+                    break;
+                case TARGZ:
+                case TARZST:
+                case TARLZ4:
+                case TARXZ:
+                case TARBZ2:
+                    unpackTarStream(CompressorStreams.decompress(type, source), recorded);
+                    break;
+                case RAR:
+                    unpackRarStream(source, recorded);
+                    break;
+                default:
+                    throw new CustomException("unsupported archive type: " + type.getTypeName());
+            }
+        } catch (ArchiveCancelledException e) {
+            recording.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            recording.fail(e);
+            throw e;
+        } finally {
+            recording.compressedSize(counter.getBytesRead());
+            LOGGER.info("finish unpack {} stream, cost:{} ms", type.getTypeName(), recording.stop());
+        }
+    }
+
+    /**
+     * 解压内存中的压缩数据，读取position到limit之间的内容，不改变buffer的position
+     *
+     * @param buffer   压缩数据
+     * @param type     压缩格式
+     * @param callback 条目回调
+     */
+    public static void unpackBuffer(ByteBuffer buffer, FileTypeEnum type, EntryCallback callback) throws IOException {
+        unpackBuffer(buffer, type, callback, ArchiveOptions.DEFAULT);
+    }
+
+    /**
+     * 解压内存中的压缩数据，读取position到limit之间的内容，不改变buffer的position
+     *
+     * @param buffer   压缩数据
+     * @param type     压缩格式
+     * @param callback 条目回调
+     * @param options  解压参数
+     */
+    public static void unpackBuffer(ByteBuffer buffer, FileTypeEnum type, EntryCallback callback,
+                                    ArchiveOptions options) throws IOException {
+        unpackStream(IoStreams.newInputStream(buffer), type, callback, options);
+    }
+
+    private static void unpackTarStream(InputStream in, EntryCallback callback) throws IOException {
+        try (TarArchiveInputStream tis = new TarArchiveInputStream(in)) {
+            TarArchiveEntry entry;
+            while ((entry = tis.getNextTarEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    callback.accept(ArchiveLister.toEntry(entry), IoStreams.closeShield(tis));
+                }
+            }
+        }
+    }
+
+    private static void unpackRarStream(InputStream in, EntryCallback callback) throws IOException {
+        try (Archive archive = new Archive(in)) {
+            FileHeader fileHeader;
+            while ((fileHeader = archive.nextFileHeader()) != null) {
+                if (fileHeader.isDirectory()) {
+                    continue;
+                }
+                try (InputStream data = archive.getInputStream(fileHeader)) {
+                    callback.accept(ArchiveLister.toEntry(fileHeader), data);
+                }
+            }
+        } catch (RarException e) {
+            throw new IOException("unpack rar stream failed", e);
+        }
+    }
+
+    /**
+     * 流式解压的条目回调
+     */
+    public interface EntryCallback {
+        /**
+         * @param entry 条目信息，流式zip中大小与CRC可能为ArchiveLister.UNKNOWN
+         * @param data  条目内容，只在回调内有效，未读完的部分会被跳过
+         */
+        void accept(ArchiveLister.Entry entry, InputStream data) throws IOException;
+    }
+
+    /**
+     * 创建本次解压共用的写出方式：异步写入或流水线写出
+     *
+     * @param options    解压参数
+     * @param concurrent 是否多个线程同时解压，流水线写出为单生产者，此时不使用
+     * @return 写出方式，均未开启时为null，直接同步写入
+     */
+    private static TargetWriter targetWriter(ArchiveOptions options, boolean concurrent) {
+        if (options.isAsyncWrite()) {
+            return new AsyncFileWriter(options);
+        }
+        if (options.isPipelined() && !concurrent) {
+            return new PipelineWriter(options);
+        }
+        return null;
+    }
+
+    /**
+     * 打开解压出的文件
+     *
+     * @param targetFile 解压出的文件
+     * @param writer     写出方式，为null时同步写入
+     * @return 输出流
+     */
+    private static OutputStream openTarget(File targetFile, TargetWriter writer) throws IOException {
+        return writer == null ? new FileOutputStream(targetFile) : writer.open(targetFile);
+    }
+
+    /**
+     * 单个条目的解压逻辑
+     */
+    private interface EntryHandler<T> {
+        void handle(T entry) throws IOException;
     }
 }
@@ -0,0 +1,183 @@
+package com.h2t.study;
+
+import com.h2t.study.enums.FileTypeEnum;
+import com.h2t.study.enums.JobResourceEnum;
+import com.h2t.study.enums.JobStateEnum;
+import com.h2t.study.job.ArchiveJob;
+import com.h2t.study.job.ArchiveJobProperties;
+import com.h2t.study.job.ArchiveJobRequest;
+import com.h2t.study.job.ArchiveJobService;
+import com.h2t.study.util.ArchiveOptions;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 任务调度测试
+ *
+ * @author hetiantian
+ * @version 1.0
+ * @Date 2020/01/09 14:00
+ */
+public class ArchiveJobServiceTest extends BaseTest {
+    @Autowired
+    private ArchiveJobService archiveJobService;
+
+    /**
+     * 提交压缩、解压任务测试
+     */
+    @Test
+    public void submitTest() throws Exception {
+        ArchiveJob compress = archiveJobService.submit(ArchiveJobRequest
+                .compress(FileTypeEnum.TARGZ, "input/springboot-log", "compress-output/job/").build());
+        ArchiveJob unpack = archiveJobService.submit(ArchiveJobRequest
+                .unpack(FileTypeEnum.ZIP, "input/springboot-log.zip", "unpack-output/job/").priority(1).build());
+        compress.getFuture().get(1, TimeUnit.MINUTES);
+        unpack.getFuture().get(1, TimeUnit.MINUTES);
+        Assertions.assertEquals(JobStateEnum.SUCCEEDED, compress.getState());
+        Assertions.assertEquals(JobStateEnum.SUCCEEDED, unpack.getState());
+    }
+
+    /**
+     * 解压失败的任务状态为FAILED测试
+     */
+    @Test
+    public void failedTest() throws Exception {
+        File corrupt = new File("unpack-output/job/corrupt.zip");
+        corrupt.getParentFile().mkdirs();
+        Files.write(corrupt.toPath(), "not a zip file".getBytes(StandardCharsets.UTF_8));
+        ArchiveJob corruptJob = archiveJobService.submit(ArchiveJobRequest
+                .unpack(FileTypeEnum.ZIP, corrupt.getPath(), "unpack-output/job/corrupt/").build());
+        ArchiveJob missingJob = archiveJobService.submit(ArchiveJobRequest
+                .unpack(FileTypeEnum.TARGZ, "input/missing.tar.gz", "unpack-output/job/missing/").build());
+        for (ArchiveJob job : new ArchiveJob[]{corruptJob, missingJob}) {
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> job.getFuture().get(1, TimeUnit.MINUTES));
+            Assertions.assertNotNull(e.getCause());
+            Assertions.assertEquals(JobStateEnum.FAILED, job.getState());
+        }
+    }
+
+    /**
+     * 未指定共享线程池的任务按单线程编解码测试
+     */
+    @Test
+    public void singleThreadedCodecTest() throws Exception {
+        AtomicReference<ArchiveOptions> captured = new AtomicReference<>();
+        ArchiveJob job = archiveJobService.submit(ArchiveJobRequest.builder("codec workers", captured::set)
+                .options(ArchiveOptions.builder().parallelism(8).gzipWorkers(8).xzWorkers(8).build()).build());
+        job.getFuture().get(10, TimeUnit.SECONDS);
+        ArchiveOptions options = captured.get();
+        Assertions.assertEquals(1, options.getParallelism());
+        Assertions.assertEquals(1, options.getGzipWorkers());
+        Assertions.assertEquals(1, options.getZstdWorkers());
+        Assertions.assertEquals(1, options.getXzWorkers());
+        Assertions.assertEquals(1, options.getBzip2Workers());
+    }
+
+    /**
+     * 租户并发限制与取消排队任务测试
+     */
+    @Test
+    public void tenantLimitAndCancelTest() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        ArchiveJob[] blocking = new ArchiveJob[2];
+        for (int i = 0; i < blocking.length; i++) {
+            blocking[i] = archiveJobService.submit(ArchiveJobRequest.builder("blocking" + i, options -> {
+                started.countDown();
+                release.await();
+            }).tenant("limited").build());
+        }
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        //租户limited已有2个任务在执行，第3个排队
+        ArchiveJob queued = archiveJobService.submit(ArchiveJobRequest.builder("queued", options -> {
+        }).tenant("limited").build());
+        Assertions.assertEquals(JobStateEnum.QUEUED, queued.getState());
+        //其他租户的计算密集任务不受影响
+        ArchiveJob other = archiveJobService.submit(ArchiveJobRequest.builder("other", options -> {
+        }).tenant("other").resource(JobResourceEnum.CPU).build());
+        other.getFuture().get(10, TimeUnit.SECONDS);
+
+        queued.cancel();
+        Assertions.assertEquals(JobStateEnum.CANCELLED, queued.getState());
+        Assertions.assertTrue(queued.getFuture().isCancelled());
+
+        release.countDown();
+        for (ArchiveJob job : blocking) {
+            job.getFuture().get(10, TimeUnit.SECONDS);
+            Assertions.assertEquals(JobStateEnum.SUCCEEDED, job.getState());
+        }
+    }
+
+    /**
+     * 虚拟线程模式测试，JDK 21以下退回平台线程池
+     */
+    @Test
+    public void virtualThreadsTest() throws Exception {
+        ArchiveJobProperties properties = new ArchiveJobProperties();
+        properties.setVirtualThreads(true);
+        properties.setWorkers(64);
+        properties.setIoSlots(64);
+        properties.setTenantConcurrency(64);
+        ArchiveJobService service = new ArchiveJobService(properties);
+        try {
+            AtomicReference<String> threadName = new AtomicReference<>();
+            ArchiveJob[] jobs = new ArchiveJob[16];
+            for (int i = 0; i < jobs.length; i++) {
+                jobs[i] = service.submit(ArchiveJobRequest
+                        .unpack(FileTypeEnum.ZIP, "input/springboot-log.zip", "unpack-output/virtual/" + i + "/").build());
+            }
+            ArchiveJob named = service.submit(ArchiveJobRequest.builder("thread name",
+                    options -> threadName.set(Thread.currentThread().getName())).build());
+            for (ArchiveJob job : jobs) {
+                job.getFuture().get(1, TimeUnit.MINUTES);
+                Assertions.assertEquals(JobStateEnum.SUCCEEDED, job.getState());
+            }
+            named.getFuture().get(1, TimeUnit.MINUTES);
+            Assertions.assertTrue(threadName.get().startsWith("archive-job-"));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * 虚拟线程模式下任务运行在虚拟线程上，且单线程编解码、不复用线程内缓冲区、使用内存映射读取器测试，仅JDK 21及以上执行
+     */
+    @Test
+    public void virtualThreadOptionsTest() throws Exception {
+        String version = System.getProperty("java.specification.version");
+        Assumptions.assumeTrue(!version.startsWith("1.") && Integer.parseInt(version) >= 21, "virtual threads require java 21+");
+        ArchiveJobProperties properties = new ArchiveJobProperties();
+        properties.setVirtualThreads(true);
+        ArchiveJobService service = new ArchiveJobService(properties);
+        try {
+            Assertions.assertTrue(service.isVirtualThreads());
+            AtomicReference<Thread> thread = new AtomicReference<>();
+            AtomicReference<ArchiveOptions> captured = new AtomicReference<>();
+            ArchiveJob job = service.submit(ArchiveJobRequest.builder("virtual thread", options -> {
+                thread.set(Thread.currentThread());
+                captured.set(options);
+            }).options(ArchiveOptions.builder().executor(ForkJoinPool.commonPool()).build()).build());
+            job.getFuture().get(10, TimeUnit.SECONDS);
+            //项目以Java 8编译，通过反射调用Thread.isVirtual
+            Assertions.assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread.get()));
+            Assertions.assertFalse(captured.get().isBufferPooled());
+            Assertions.assertTrue(captured.get().isMemoryMapped());
+            Assertions.assertEquals(1, captured.get().getParallelism());
+            Assertions.assertEquals(1, captured.get().getXzWorkers());
+        } finally {
+            service.shutdown();
+        }
+    }
+}
@@ -1,9 +1,60 @@
 package com.h2t.study;
 
+import com.h2t.study.enums.CompressProfileEnum;
+import com.h2t.study.enums.FileTypeEnum;
+import com.h2t.study.util.ArchiveLister;
+import com.h2t.study.util.ArchiveOptions;
+import com.h2t.study.util.ArchiveSource;
+import com.h2t.study.util.CancellationToken;
 import com.h2t.study.util.CompressUtil;
+import com.h2t.study.util.CompressorStreams;
+import com.h2t.study.util.ParallelBzip2InputStream;
+import com.h2t.study.util.ParallelBzip2OutputStream;
+import com.h2t.study.util.ParallelGzipOutputStream;
+import com.h2t.study.util.ParallelXzInputStream;
+import com.h2t.study.util.ParallelXzOutputStream;
+import com.h2t.study.util.ProgressListener;
+import com.h2t.study.util.UnpackUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+import org.tukaani.xz.XZInputStream;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * 压缩工具测试类
@@ -13,6 +64,9 @@ import java.io.IOException;
  * @Date 2019/12/11 11:48
  */
 public class CompressToolTest extends BaseTest {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
      * 压缩为zip测试
      */
@@ -23,6 +77,84 @@ public class CompressToolTest extends BaseTest {
         CompressUtil.compressToZip(sourcePath, targetPath);
     }
 
+    /**
+     * 指定缓冲区大小、多线程压缩为zip测试，各条目解压后与源文件逐字节一致
+     */
+    @Test
+    public void zipCompressWithOptionsTest() throws IOException {
+        String sourcePath = "input/springboot-log";
+        String targetPath = "compress-output/parallel-zip/";
+        ArchiveOptions options = ArchiveOptions.builder()
+                .bufferSize(1024 * 1024)
+                .bufferPooled(true)
+                .parallelism(4)
+                .build();
+        CompressUtil.compressToZip(sourcePath, targetPath, options);
+
+        Path sourceDir = Paths.get(sourcePath);
+        Map<String, byte[]> expected = new HashMap<>();
+        try (Stream<Path> files = Files.walk(sourceDir)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String name = "springboot-log/" + sourceDir.relativize(file).toString().replace(File.separatorChar, '/');
+                expected.put(name, Files.readAllBytes(file));
+            }
+        }
+        Map<String, byte[]> unpacked = new HashMap<>();
+        try (ZipFile zipFile = new ZipFile(targetPath + "springboot-log.zip")) {
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                if (!entry.isDirectory()) {
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        unpacked.put(entry.getName(), readAll(in));
+                    }
+                }
+            }
+        }
+        Assertions.assertEquals(expected.keySet(), unpacked.keySet());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            Assertions.assertArrayEquals(entry.getValue(), unpacked.get(entry.getKey()), entry.getKey());
+        }
+    }
+
+    /**
+     * zip中不可压缩的文件（已压缩格式的扩展名、试压缩压不动的内容）以STORED存储，文本仍DEFLATED，关闭adaptiveStore时全部DEFLATED
+     */
+    @Test
+    public void zipAdaptiveStoreTest() throws IOException {
+        Path sourceDir = Paths.get("compress-output/adaptive/source");
+        Files.createDirectories(sourceDir);
+        byte[] noise = new byte[256 * 1024];
+        new Random(3).nextBytes(noise);
+        Map<String, byte[]> files = new HashMap<>();
+        //扩展名为jpg，内容可压缩也按扩展名STORED
+        files.put("photo.jpg", randomText(128 * 1024));
+        files.put("noise.bin", noise);
+        files.put("text.txt", randomText(256 * 1024));
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            Files.write(sourceDir.resolve(file.getKey()), file.getValue());
+        }
+
+        for (boolean adaptiveStore : new boolean[]{true, false}) {
+            String targetPath = "compress-output/adaptive/" + adaptiveStore + "/";
+            CompressUtil.compressToZip(sourceDir.toString(), targetPath,
+                    ArchiveOptions.builder().adaptiveStore(adaptiveStore).build());
+            Map<String, Integer> methods = new HashMap<>();
+            try (ZipFile zipFile = new ZipFile(targetPath + "source.zip")) {
+                for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                    String name = entry.getName().substring("source/".length());
+                    methods.put(name, entry.getMethod());
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        Assertions.assertArrayEquals(files.get(name), readAll(in), name);
+                    }
+                }
+            }
+            Assertions.assertEquals(files.keySet(), methods.keySet());
+            int stored = adaptiveStore ? ZipEntry.STORED : ZipEntry.DEFLATED;
+            Assertions.assertEquals(stored, methods.get("photo.jpg"));
+            Assertions.assertEquals(stored, methods.get("noise.bin"));
+            Assertions.assertEquals(ZipEntry.DEFLATED, methods.get("text.txt"));
+        }
+    }
+
     /**
      * 压缩为tar测试
      */
@@ -52,4 +184,339 @@ public class CompressToolTest extends BaseTest {
         String targetPath = "compress-output/";
         CompressUtil.compressToTarGz(sourcePath, targetPath);
     }
+
+    /**
+     * 指定压缩预设压缩为tar.gz测试
+     */
+    @Test
+    public void tarGzCompressWithProfileTest() throws IOException {
+        String sourcePath = "input/springboot-log";
+        String targetPath = "compress-output/";
+        ArchiveOptions options = ArchiveOptions.builder()
+                .compressProfile(CompressProfileEnum.FILTERED)
+                .build();
+        CompressUtil.compressToTarGz(sourcePath, targetPath, options);
+
+        //同一份输入，FAST的压缩率低于MAX；先删除上次的输出，避免压缩失败时比较到旧文件
+        File fast = new File("compress-output/profile/fast/springboot-log.tar.gz");
+        File max = new File("compress-output/profile/max/springboot-log.tar.gz");
+        Files.deleteIfExists(fast.toPath());
+        Files.deleteIfExists(max.toPath());
+        CompressUtil.compressToTarGz(sourcePath, "compress-output/profile/fast/",
+                ArchiveOptions.builder().compressProfile(CompressProfileEnum.FAST).build());
+        CompressUtil.compressToTarGz(sourcePath, "compress-output/profile/max/",
+                ArchiveOptions.builder().compressProfile(CompressProfileEnum.MAX).build());
+        Assertions.assertTrue(max.length() > 0);
+        Assertions.assertTrue(fast.length() > max.length(), "fast: " + fast.length() + ", max: " + max.length());
+    }
+
+    /**
+     * 压缩为tar.zst测试
+     */
+    @Test
+    public void tarZstCompressTest() {
+        String sourcePath = "input/springboot-log";
+        String targetPath = "compress-output/";
+        CompressUtil.compressToTarZst(sourcePath, targetPath);
+    }
+
+    /**
+     * 压缩为tar.lz4测试
+     */
+    @Test
+    public void tarLz4CompressTest() {
+        String sourcePath = "input/springboot-log";
+        String targetPath = "compress-output/";
+        CompressUtil.compressToTarLz4(sourcePath, targetPath);
+    }
+
+    /**
+     * 压缩为tar.xz测试
+     */
+    @Test
+    public void tarXzCompressTest() {
+        String sourcePath = "input/springboot-log";
+        String targetPath = "compress-output/";
+        CompressUtil.compressToTarXz(sourcePath, targetPath);
+    }
+
+    /**
+     * 压缩为tar.bz2测试
+     */
+    @Test
+    public void tarBz2CompressTest() {
+        String sourcePath = "input/springboot-log";
+        String targetPath = "compress-output/";
+        CompressUtil.compressToTarBz2(sourcePath, targetPath);
+    }
+
+    /**
+     * 并行gzip压缩结果可被标准gzip解压测试
+     */
+    @Test
+    public void parallelGzCompressTest() throws IOException {
+        byte[] data = new byte[ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE * 5 + 123];
+        Random random = new Random(1);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gos = new ParallelGzipOutputStream(compressed)) {
+            gos.write(data);
+        }
+
+        ByteArrayOutputStream unpacked = new ByteArrayOutputStream();
+        try (GzipCompressorInputStream gis = new GzipCompressorInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = gis.read(buffer)) != -1) {
+                unpacked.write(buffer, 0, read);
+            }
+        }
+        Assertions.assertArrayEquals(data, unpacked.toByteArray());
+    }
+
+    /**
+     * 写出压缩包失败（磁盘已满）时compress抛出异常而不是跳过文件测试，借助/dev/full模拟，仅Linux执行
+     */
+    @Test
+    public void diskFullCompressTest() throws IOException {
+        File deviceFull = new File("/dev/full");
+        Assumptions.assumeTrue(deviceFull.exists(), "/dev/full is not available");
+        String targetPath = "compress-output/full/";
+        new File(targetPath).mkdirs();
+        for (FileTypeEnum type : new FileTypeEnum[]{FileTypeEnum.TAR, FileTypeEnum.TARGZ}) {
+            Path target = Paths.get(targetPath, "springboot-log." + type.getTypeName());
+            Files.deleteIfExists(target);
+            Files.createSymbolicLink(target, deviceFull.toPath());
+            for (boolean zeroCopy : new boolean[]{true, false}) {
+                ArchiveOptions options = ArchiveOptions.builder().zeroCopy(zeroCopy).build();
+                Assertions.assertThrows(IOException.class,
+                        () -> CompressUtil.compress(type, "input/springboot-log", targetPath, options), type.getTypeName());
+            }
+        }
+    }
+
+    /**
+     * 源文件无法读取（悬空的符号链接）时只跳过该文件，压缩包完整且包含其余文件测试
+     */
+    @Test
+    public void unreadableSourceCompressTest() throws IOException {
+        Path sourceDir = Paths.get("compress-output/unreadable/source");
+        Files.createDirectories(sourceDir);
+        Files.write(sourceDir.resolve("a.txt"), "a".getBytes(StandardCharsets.UTF_8));
+        Files.write(sourceDir.resolve("c.txt"), "c".getBytes(StandardCharsets.UTF_8));
+        Path dangling = sourceDir.resolve("b.txt");
+        Files.deleteIfExists(dangling);
+        Files.createSymbolicLink(dangling, Paths.get("missing.txt"));
+
+        String targetPath = "compress-output/unreadable/";
+        for (boolean zeroCopy : new boolean[]{true, false}) {
+            CompressUtil.compress(FileTypeEnum.TAR, sourceDir.toString(), targetPath,
+                    ArchiveOptions.builder().zeroCopy(zeroCopy).build());
+            try (Stream<ArchiveLister.Entry> entries = ArchiveLister.listTar(targetPath + "source.tar")) {
+                Assertions.assertEquals(new HashSet<>(Arrays.asList("source/a.txt", "source/c.txt")),
+                        entries.map(ArchiveLister.Entry::getName).collect(Collectors.toSet()));
+            }
+        }
+        CompressUtil.compress(FileTypeEnum.TARGZ, sourceDir.toString(), targetPath, ArchiveOptions.DEFAULT);
+        try (Stream<ArchiveLister.Entry> entries = ArchiveLister.listTarGz(targetPath + "source.tar.gz")) {
+            Assertions.assertEquals(2, entries.count());
+        }
+    }
+
+    /**
+     * 并行gzip压缩按gzipWorkers使用线程测试：为1时不创建压缩线程，为2时最多2个
+     */
+    @Test
+    public void parallelGzWorkersTest() throws IOException {
+        byte[] data = randomText(ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE * 8 + 5);
+        for (int workers : new int[]{1, 2}) {
+            Set<Thread> before = Thread.getAllStackTraces().keySet();
+            long maxThreads = 0;
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (ParallelGzipOutputStream gos = new ParallelGzipOutputStream(compressed,
+                    ArchiveOptions.builder().gzipWorkers(workers).build())) {
+                for (int off = 0; off < data.length; off += ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE) {
+                    gos.write(data, off, Math.min(ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, data.length - off));
+                    maxThreads = Math.max(maxThreads, Thread.getAllStackTraces().keySet().stream()
+                            .filter(thread -> !before.contains(thread) && thread.getName().startsWith("parallel-gzip-")).count());
+                }
+            }
+            if (workers == 1) {
+                Assertions.assertEquals(0, maxThreads);
+            } else {
+                Assertions.assertTrue(maxThreads > 0 && maxThreads <= workers, "threads: " + maxThreads);
+            }
+            try (InputStream in = new GzipCompressorInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+                Assertions.assertArrayEquals(data, readAll(in));
+            }
+        }
+    }
+
+    /**
+     * zstd、lz4压缩后解压结果与原数据逐字节一致测试，数据大于lz4的4MB块，zstd多线程时分为多个任务
+     */
+    @Test
+    public void zstLz4RoundTripTest() throws IOException {
+        byte[] data = randomText(9 * 1024 * 1024 + 123);
+        ArchiveOptions options = ArchiveOptions.builder().zstdWorkers(2).build();
+        for (FileTypeEnum type : new FileTypeEnum[]{FileTypeEnum.ZST, FileTypeEnum.LZ4}) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = CompressorStreams.compress(type, compressed, options)) {
+                out.write(data);
+            }
+            Assertions.assertTrue(compressed.size() < data.length);
+            try (InputStream in = CompressorStreams.decompress(type, new ByteArrayInputStream(compressed.toByteArray()))) {
+                Assertions.assertArrayEquals(data, readAll(in), type.getTypeName());
+            }
+        }
+    }
+
+    /**
+     * xz分块并行压缩后顺序、并行解压结果均与原数据逐字节一致测试，预设级别0时分块大小为1MB，数据分为4块
+     */
+    @Test
+    public void parallelXzRoundTripTest() throws IOException {
+        byte[] data = randomText(3 * 1024 * 1024 + 123);
+        File compressed = new File("compress-output/round-trip.xz");
+        compressed.getParentFile().mkdirs();
+        try (OutputStream out = new ParallelXzOutputStream(new FileOutputStream(compressed), new LZMA2Options(0), 2)) {
+            out.write(data);
+        }
+        try (SeekableXZInputStream in = new SeekableXZInputStream(new SeekableFileInputStream(compressed))) {
+            Assertions.assertEquals(4, in.getBlockCount());
+        }
+        try (InputStream in = new XZInputStream(new FileInputStream(compressed))) {
+            Assertions.assertArrayEquals(data, readAll(in));
+        }
+        try (ParallelXzInputStream in = new ParallelXzInputStream(compressed, 2)) {
+            Assertions.assertArrayEquals(data, readAll(in));
+        }
+    }
+
+    /**
+     * bzip2分块并行压缩后顺序、并行解压结果均与原数据逐字节一致测试，块大小100KB时数据分为4个stream
+     */
+    @Test
+    public void parallelBzip2RoundTripTest() throws IOException {
+        byte[] data = randomText(3 * 100000 + 77);
+        File compressed = new File("compress-output/round-trip.bz2");
+        compressed.getParentFile().mkdirs();
+        try (OutputStream out = new ParallelBzip2OutputStream(new FileOutputStream(compressed), 1, 2)) {
+            out.write(data);
+        }
+        try (InputStream in = new BZip2CompressorInputStream(new FileInputStream(compressed), true)) {
+            Assertions.assertArrayEquals(data, readAll(in));
+        }
+        try (InputStream in = new ParallelBzip2InputStream(compressed, 2, ArchiveOptions.DEFAULT_BUFFER_SIZE)) {
+            Assertions.assertArrayEquals(data, readAll(in));
+        }
+    }
+
+    /**
+     * 内存中压缩、解压往返测试
+     */
+    @Test
+    public void streamRoundTripTest() throws IOException {
+        byte[] data = new byte[1024 * 1024];
+        new Random(7).nextBytes(data);
+        List<ArchiveSource> sources = Arrays.asList(ArchiveSource.of("a/random.bin", data),
+                ArchiveSource.of("b/hello.txt", "hello".getBytes(StandardCharsets.UTF_8)));
+        ByteBuffer compressed = CompressUtil.compressToBuffer(sources, FileTypeEnum.TARGZ, ArchiveOptions.DEFAULT);
+
+        Map<String, byte[]> unpacked = new HashMap<>();
+        UnpackUtil.unpackBuffer(compressed, FileTypeEnum.TARGZ, (entry, in) -> {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bos.write(buffer, 0, read);
+            }
+            unpacked.put(entry.getName(), bos.toByteArray());
+        });
+        Assertions.assertArrayEquals(data, unpacked.get("a/random.bin"));
+        Assertions.assertArrayEquals("hello".getBytes(StandardCharsets.UTF_8), unpacked.get("b/hello.txt"));
+    }
+
+    /**
+     * 内存中压缩zip按压缩策略压缩测试：HUFFMAN_ONLY不做字符串匹配，重复的日志行压缩结果远大于默认策略
+     */
+    @Test
+    public void zipStreamStrategyTest() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append("2020-01-13 10:00:00 INFO request finished, id:").append(i % 100).append('\n');
+        }
+        byte[] data = text.toString().getBytes(StandardCharsets.UTF_8);
+        List<ArchiveSource> sources = Arrays.asList(ArchiveSource.of("a/text.txt", data));
+        ByteBuffer standard = CompressUtil.compressToBuffer(sources, FileTypeEnum.ZIP,
+                ArchiveOptions.builder().compressStrategy(Deflater.DEFAULT_STRATEGY).build());
+        ByteBuffer huffman = CompressUtil.compressToBuffer(sources, FileTypeEnum.ZIP,
+                ArchiveOptions.builder().compressStrategy(Deflater.HUFFMAN_ONLY).build());
+        Assertions.assertTrue(huffman.remaining() > standard.remaining(),
+                "huffman only: " + huffman.remaining() + ", default: " + standard.remaining());
+
+        //带参数解压，参数中的监听器收到条目事件
+        List<String> finished = new ArrayList<>();
+        Map<String, byte[]> unpacked = new HashMap<>();
+        UnpackUtil.unpackBuffer(huffman, FileTypeEnum.ZIP, (entry, in) -> unpacked.put(entry.getName(), readAll(in)),
+                ArchiveOptions.builder().progressListener(new ProgressListener() {
+                    @Override
+                    public void entryFinished(String name, long size) {
+                        finished.add(name);
+                    }
+                }).build());
+        Assertions.assertArrayEquals(data, unpacked.get("a/text.txt"));
+        Assertions.assertEquals(Arrays.asList("a/text.txt"), finished);
+    }
+
+    /**
+     * 压缩指标测试，指标记录到应用的MeterRegistry
+     */
+    @Test
+    public void metricsTest() {
+        CompressUtil.compressToTarGz("input/springboot-log", "compress-output/");
+
+        Timer timer = meterRegistry.find("archive.operation")
+                .tags("operation", "compress", "format", "tar.gz", "outcome", "success").timer();
+        Assertions.assertNotNull(timer);
+        Assertions.assertTrue(timer.count() > 0);
+        Assertions.assertTrue(meterRegistry.get("archive.entries").tags("operation", "compress", "format", "tar.gz")
+                .counter().count() > 0);
+        Assertions.assertTrue(meterRegistry.get("archive.compression.ratio").tags("operation", "compress", "format", "tar.gz")
+                .summary().count() > 0);
+
+        //取消记为cancelled，不计入archive.errors
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        CompressUtil.compressToTarGz("input/springboot-log", "compress-output/cancelled/",
+                ArchiveOptions.builder().cancellationToken(token).build());
+        Assertions.assertNotNull(meterRegistry.find("archive.operation")
+                .tags("operation", "compress", "format", "tar.gz", "outcome", "cancelled").timer());
+        Assertions.assertNull(meterRegistry.find("archive.errors")
+                .tags("exception", "ArchiveCancelledException").counter());
+    }
+
+    /**
+     * 由a~h组成的随机文本，可压缩但不会被压缩成极小的数据
+     */
+    private static byte[] randomText(int length) {
+        byte[] data = new byte[length];
+        Random random = new Random(1);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bos.write(buffer, 0, read);
+        }
+        return bos.toByteArray();
+    }
 }
@@ -1,10 +1,34 @@
 package com.h2t.study;
 
+import com.h2t.study.util.ArchiveLister;
+import com.h2t.study.util.ArchiveOptions;
+import com.h2t.study.util.CancellationToken;
+import com.h2t.study.util.EntryFilters;
+import com.h2t.study.util.ProgressListener;
 import com.h2t.study.util.UnpackUtil;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 解压工具类测试
@@ -28,6 +52,24 @@ public class UnpackToolTest extends BaseTest {
         UnpackUtil.unpackZip(sourcePath, targetPath);
     }
 
+    /**
+     * 并行解压zip测试
+     */
+    @Test
+    public void zipParallelUnpackTest() throws IOException {
+        String sourcePath = "input/springboot-log.zip";
+        String targetPath = "unpack-output/parallel/";
+        deleteTree(Paths.get(targetPath));
+        UnpackUtil.unpackZip(sourcePath, targetPath, Runtime.getRuntime().availableProcessors());
+        assertSameFiles(Paths.get("input/springboot-log"), Paths.get(targetPath, "springboot-log"));
+
+        //按参数中的并行度解压
+        targetPath = "unpack-output/parallel-options/";
+        deleteTree(Paths.get(targetPath));
+        UnpackUtil.unpackZip(sourcePath, targetPath, ArchiveOptions.builder().parallelism(4).build());
+        assertSameFiles(Paths.get("input/springboot-log"), Paths.get(targetPath, "springboot-log"));
+    }
+
     /**
      * 解压rar测试
      */
@@ -62,6 +104,40 @@ public class UnpackToolTest extends BaseTest {
         UnpackUtil.unpackGz(sourcePath, targetPath);
     }
 
+    /**
+     * 内存映射方式解压tar测试
+     */
+    @Test
+    public void tarMappedUnpackTest() throws IOException {
+        String sourcePath = "input/springboot-log.tar";
+        String targetPath = "unpack-output/tar-mapped/";
+        deleteTree(Paths.get(targetPath));
+        UnpackUtil.unpackTar(sourcePath, targetPath, ArchiveOptions.builder().memoryMapped(true).build());
+        String streamPath = "unpack-output/tar-stream/";
+        deleteTree(Paths.get(streamPath));
+        UnpackUtil.unpackTar(sourcePath, streamPath, ArchiveOptions.builder().memoryMapped(false).build());
+        assertSameFiles(Paths.get(streamPath), Paths.get(targetPath));
+        assertSameFiles(Paths.get("input/springboot-log"), Paths.get(targetPath, "springboot-log"));
+
+        //PAX扩展头中的size覆盖头部记录的大小，与TarArchiveInputStream一致
+        File paxTar = new File("unpack-output/pax-size/pax.tar");
+        paxTar.getParentFile().mkdirs();
+        byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+        byte[] paxData = ("10 size=" + data.length + "\n").getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = new FileOutputStream(paxTar)) {
+            writeTarRecord(out, new TarArchiveEntry("./PaxHeaders.X/pax.txt", TarConstants.LF_PAX_EXTENDED_HEADER_LC), paxData);
+            //头部记录的大小为0，实际大小只在PAX中
+            writeTarRecord(out, new TarArchiveEntry("pax.txt"), data);
+            out.write(new byte[TarConstants.DEFAULT_RCDSIZE * 2]);
+        }
+        for (boolean mapped : new boolean[]{true, false}) {
+            String paxTarget = "unpack-output/pax-size/" + (mapped ? "mapped/" : "stream/");
+            deleteTree(Paths.get(paxTarget));
+            UnpackUtil.unpackTar(paxTar.getPath(), paxTarget, ArchiveOptions.builder().memoryMapped(mapped).build());
+            Assertions.assertArrayEquals(data, Files.readAllBytes(Paths.get(paxTarget, "pax.txt")));
+        }
+    }
+
     /**
      * 解压tar.gz测试
      */
@@ -71,4 +147,259 @@ public class UnpackToolTest extends BaseTest {
         String targetPath = "unpack-output/";
         UnpackUtil.unpackTarGz(sourcePath, targetPath);
     }
+
+    /**
+     * 解压tar.zst测试
+     */
+    @Test
+    public void tarZstUnpackTest() {
+        String sourcePath = "input/springboot-log.tar.zst";
+        String targetPath = "unpack-output/";
+        UnpackUtil.unpackTarZst(sourcePath, targetPath);
+    }
+
+    /**
+     * 解压tar.lz4测试
+     */
+    @Test
+    public void tarLz4UnpackTest() {
+        String sourcePath = "input/springboot-log.tar.lz4";
+        String targetPath = "unpack-output/";
+        UnpackUtil.unpackTarLz4(sourcePath, targetPath);
+    }
+
+    /**
+     * 解压tar.xz测试
+     */
+    @Test
+    public void tarXzUnpackTest() {
+        String sourcePath = "input/springboot-log.tar.xz";
+        String targetPath = "unpack-output/";
+        UnpackUtil.unpackTarXz(sourcePath, targetPath);
+    }
+
+    /**
+     * 解压tar.bz2测试
+     */
+    @Test
+    public void tarBz2UnpackTest() {
+        String sourcePath = "input/springboot-log.tar.bz2";
+        String targetPath = "unpack-output/";
+        UnpackUtil.unpackTarBz2(sourcePath, targetPath);
+    }
+
+    /**
+     * 多线程解压gz测试
+     */
+    @Test
+    public void gzParallelUnpackTest() throws IOException {
+        String sourcePath = "input/springboot-log.tar.gz";
+        String targetPath = "unpack-output/";
+        UnpackUtil.unpackGz(sourcePath, targetPath, ArchiveOptions.builder().gzipWorkers(4).build());
+
+        //多个member首尾相接，其中全零的member解压后超过单段上限，该member起退化为顺序解压
+        File multiMember = new File("unpack-output/multi-member/multi.gz");
+        multiMember.getParentFile().mkdirs();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        byte[][] members = {Files.readAllBytes(Paths.get("input/springboot-log/f1.txt")),
+                Files.readAllBytes(Paths.get("input/springboot-log/f2.txt")),
+                new byte[40 * 1024 * 1024],
+                Files.readAllBytes(Paths.get("input/springboot-log/f3.txt"))};
+        try (OutputStream out = new FileOutputStream(multiMember)) {
+            for (byte[] member : members) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GZIPOutputStream gos = new GZIPOutputStream(compressed)) {
+                    gos.write(member);
+                }
+                out.write(compressed.toByteArray());
+                expected.write(member);
+            }
+        }
+        String tarPath = UnpackUtil.unpackGz(multiMember, "unpack-output/multi-member/out/",
+                ArchiveOptions.builder().gzipWorkers(2).build());
+        Assertions.assertArrayEquals(expected.toByteArray(), Files.readAllBytes(Paths.get(tarPath)));
+    }
+
+    /**
+     * 建立tar.gz随机访问索引测试
+     */
+    @Test
+    public void tarGzIndexTest() throws IOException {
+        //索引保存在源文件旁，复制到输出目录后再建立，不在input下生成索引文件
+        String targetPath = "unpack-output/index/";
+        File sourceFile = new File(targetPath, "springboot-log.tar.gz");
+        sourceFile.getParentFile().mkdirs();
+        Files.copy(Paths.get("input/springboot-log.tar.gz"), sourceFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        //检查点间隔1MB，条目需从中间的检查点开始解压
+        String indexPath = UnpackUtil.indexTarGz(sourceFile, 1024 * 1024);
+        Assertions.assertNotNull(indexPath);
+        Assertions.assertTrue(new File(indexPath).isFile());
+
+        String entryName = "springboot-log/sub/nums.log";
+        Files.deleteIfExists(Paths.get(targetPath, entryName));
+        UnpackUtil.unpackTarGzEntry(sourceFile.getPath(), entryName, targetPath);
+        Assertions.assertArrayEquals(Files.readAllBytes(Paths.get("input/springboot-log/sub/nums.log")),
+                Files.readAllBytes(Paths.get(targetPath, entryName)));
+
+        //不存在的条目记为失败，不抛出异常也不写出文件
+        String missingName = "springboot-log/missing.txt";
+        UnpackUtil.unpackTarGzEntry(sourceFile.getPath(), missingName, targetPath);
+        Assertions.assertFalse(Files.exists(Paths.get(targetPath, missingName)));
+    }
+
+    /**
+     * 按glob只解压部分条目测试
+     */
+    @Test
+    public void selectiveUnpackTest() throws IOException {
+        //只解压出匹配的条目，内容与fixture一致
+        Path zipTarget = Paths.get("unpack-output/selective/zip");
+        deleteTree(zipTarget);
+        UnpackUtil.unpackZip("input/springboot-log.zip", zipTarget + "/", EntryFilters.glob("**/*.log"));
+        assertSelected(zipTarget, Paths.get("springboot-log", "sub", "nums.log"));
+
+        Path tarGzTarget = Paths.get("unpack-output/selective/tar-gz");
+        deleteTree(tarGzTarget);
+        UnpackUtil.unpackTarGz("input/springboot-log.tar.gz", tarGzTarget + "/", EntryFilters.glob("springboot-log/f?.txt"));
+        assertSelected(tarGzTarget, Paths.get("springboot-log", "f1.txt"), Paths.get("springboot-log", "f2.txt"),
+                Paths.get("springboot-log", "f3.txt"));
+    }
+
+    /**
+     * 不解压列出条目测试
+     */
+    @Test
+    public void listTest() throws IOException {
+        //fixture中每个文件对应一个条目，条目名为springboot-log/开头的相对路径
+        Path sourceDir = Paths.get("input/springboot-log");
+        Map<String, Long> expected = new HashMap<>();
+        try (Stream<Path> files = Files.walk(sourceDir)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String name = "springboot-log/" + sourceDir.relativize(file).toString().replace(File.separatorChar, '/');
+                expected.put(name, Files.size(file));
+            }
+        }
+        Assertions.assertFalse(expected.isEmpty());
+
+        try (Stream<ArchiveLister.Entry> entries = ArchiveLister.listZip("input/springboot-log.zip")) {
+            Assertions.assertEquals(expected, entries.filter(entry -> !entry.isDirectory())
+                    .collect(Collectors.toMap(ArchiveLister.Entry::getName, ArchiveLister.Entry::getSize)));
+        }
+        try (Stream<ArchiveLister.Entry> entries = ArchiveLister.listTarGz("input/springboot-log.tar.gz")) {
+            Assertions.assertEquals(expected, entries.filter(entry -> !entry.isDirectory())
+                    .collect(Collectors.toMap(ArchiveLister.Entry::getName, ArchiveLister.Entry::getSize)));
+        }
+    }
+
+    /**
+     * 异步写出解压文件测试
+     */
+    @Test
+    public void asyncWriteUnpackTest() throws IOException {
+        String sourcePath = "input/springboot-log.tar.gz";
+        String targetPath = "unpack-output/async/";
+        deleteTree(Paths.get(targetPath));
+        UnpackUtil.unpackTarGz(sourcePath, targetPath, ArchiveOptions.builder().asyncWrite(true).asyncWriteDepth(4).build());
+        assertSameFiles(Paths.get("input/springboot-log"), Paths.get(targetPath, "springboot-log"));
+    }
+
+    /**
+     * 读取、解压、写出三级流水线解压测试
+     */
+    @Test
+    public void pipelinedUnpackTest() throws IOException {
+        String sourcePath = "input/springboot-log.tar";
+        Path targetDir = Paths.get("unpack-output/pipelined");
+        deleteTree(targetDir);
+        UnpackUtil.unpackTar(sourcePath, targetDir + "/", ArchiveOptions.builder().pipelined(true).pipelineBlocks(4).build());
+        assertSameFiles(Paths.get("input/springboot-log"), targetDir.resolve("springboot-log"));
+    }
+
+    /**
+     * 解压进度与取消测试
+     */
+    @Test
+    public void progressAndCancelTest() throws IOException {
+        String sourcePath = "input/springboot-log.tar";
+        AtomicInteger finished = new AtomicInteger();
+        UnpackUtil.unpackTar(sourcePath, "unpack-output/", ArchiveOptions.builder()
+                .progressListener(new ProgressListener() {
+                    @Override
+                    public void entryFinished(String name, long size) {
+                        finished.incrementAndGet();
+                    }
+                }).build());
+        Assertions.assertTrue(finished.get() > 0);
+
+        //已取消的任务不写出任何文件
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        String targetPath = "unpack-output/cancelled";
+        UnpackUtil.unpackTar(sourcePath, targetPath, ArchiveOptions.builder().cancellationToken(token).build());
+        try (Stream<Path> files = Files.walk(Paths.get(targetPath))) {
+            Assertions.assertFalse(files.anyMatch(Files::isRegularFile));
+        }
+    }
+
+    /**
+     * 解压出的目录与fixture中的文件集合相同且内容逐字节一致
+     */
+    private static void assertSameFiles(Path expectedDir, Path actualDir) throws IOException {
+        Map<String, Path> expected = regularFiles(expectedDir);
+        Map<String, Path> actual = regularFiles(actualDir);
+        Assertions.assertFalse(expected.isEmpty());
+        Assertions.assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, Path> file : expected.entrySet()) {
+            Assertions.assertArrayEquals(Files.readAllBytes(file.getValue()), Files.readAllBytes(actual.get(file.getKey())),
+                    file.getKey());
+        }
+    }
+
+    /**
+     * 目录中只有expected列出的文件，且内容与input下的同名文件一致
+     */
+    private static void assertSelected(Path targetDir, Path... expected) throws IOException {
+        Map<String, Path> actual = regularFiles(targetDir);
+        Assertions.assertEquals(Arrays.stream(expected).map(Path::toString).collect(Collectors.toSet()), actual.keySet());
+        for (Path name : expected) {
+            Assertions.assertArrayEquals(Files.readAllBytes(Paths.get("input").resolve(name)),
+                    Files.readAllBytes(targetDir.resolve(name)), name.toString());
+        }
+    }
+
+    private static Map<String, Path> regularFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .collect(Collectors.toMap(file -> dir.relativize(file).toString(), file -> file));
+        }
+    }
+
+    /**
+     * 删除上次运行解压出的目录，避免残留文件影响比较
+     */
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * 写出一个tar头及数据，数据补齐到512字节；PAX扩展头的大小取数据长度，其余条目使用entry中的大小，可与数据长度不同
+     */
+    private static void writeTarRecord(OutputStream out, TarArchiveEntry entry, byte[] data) throws IOException {
+        if (entry.isPaxHeader()) {
+            entry.setSize(data.length);
+        }
+        byte[] header = new byte[TarConstants.DEFAULT_RCDSIZE];
+        entry.writeEntryHeader(header);
+        out.write(header);
+        out.write(data);
+        int padding = (TarConstants.DEFAULT_RCDSIZE - data.length % TarConstants.DEFAULT_RCDSIZE) % TarConstants.DEFAULT_RCDSIZE;
+        out.write(new byte[padding]);
+    }
 }